@@ -0,0 +1,55 @@
+// PointTimerBenchmark.java
+package org.projectpersistence.queue;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// accumulatePoints: one invocation is one scheduler tick, advancing the wheel by a second and moving every
+// entry that earned a point to its new place, the way Queue.onPointBoundary does.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PointTimerBenchmark {
+
+	@Param({"1000", "10000", "100000"})
+	public int size;
+
+	private QueueEntryTable entries;
+
+	private QueueIndex index;
+
+	private PointTimer timer;
+
+	private long now;
+
+	private int fired;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		now = System.currentTimeMillis();
+
+		entries = QueueFixtures.table(QueueFixtures.records(size, now, QueueFixtures.tierMix(), 42), now);
+		index = QueueFixtures.index(entries);
+		timer = new PointTimer(entries, 256, 1000, now, this::onPointBoundary);
+
+		for (int slot = 0; slot < entries.slots(); slot++) {
+			timer.schedule(slot, entries.boundaryAfter(slot, entries.indexedPoints[slot]));
+		}
+	}
+
+	private void onPointBoundary(int slot) {
+		int points = entries.pointsAt(slot, now);
+		index.reposition(slot, points);
+		timer.schedule(slot, entries.boundaryAfter(slot, points));
+		fired++;
+	}
+
+	// Returns how many entries have earned a point so far
+	@Benchmark
+	public int accumulatePoints() {
+		now += 1000;
+		timer.advance(now);
+		return fired;
+	}
+}
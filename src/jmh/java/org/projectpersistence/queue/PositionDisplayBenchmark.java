@@ -0,0 +1,99 @@
+// PositionDisplayBenchmark.java
+package org.projectpersistence.queue;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// updateQueuePositions: the action bar pass over the queue, sending to fake players that drop the packets.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PositionDisplayBenchmark {
+
+	@Param({"1000", "10000", "100000"})
+	public int size;
+
+	private QueueEntryTable entries;
+
+	private QueueIndex index;
+
+	private PointTimer timer;
+
+	private ProxyServer server;
+
+	private long now;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		now = System.currentTimeMillis();
+
+		entries = QueueFixtures.table(QueueFixtures.records(size, now, QueueFixtures.tierMix(), 42), now);
+		index = QueueFixtures.index(entries);
+		server = QueueFixtures.proxyServer(entries);
+		timer = new PointTimer(entries, 256, 1000, now, slot -> {
+			int points = entries.pointsAt(slot, now);
+			index.reposition(slot, points);
+			timer.schedule(slot, entries.boundaryAfter(slot, points));
+		});
+
+		for (int slot = 0; slot < entries.slots(); slot++) {
+			timer.schedule(slot, entries.boundaryAfter(slot, entries.indexedPoints[slot]));
+		}
+	}
+
+	private PositionDisplay display(long refreshMillis) {
+		return new PositionDisplay(server, entries, index, new WaitEstimator(entries), refreshMillis);
+	}
+
+	@State(Scope.Thread)
+	public static class Idle {
+		PositionDisplay display;
+
+		@Setup(Level.Trial)
+		public void setup(PositionDisplayBenchmark benchmark) {
+			display = benchmark.display(Long.MAX_VALUE);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Diffing {
+		PositionDisplay display;
+
+		@Setup(Level.Trial)
+		public void setup(PositionDisplayBenchmark benchmark) {
+			display = benchmark.display(Long.MAX_VALUE);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Refreshing {
+		PositionDisplay display;
+
+		@Setup(Level.Trial)
+		public void setup(PositionDisplayBenchmark benchmark) {
+			display = benchmark.display(0);
+		}
+	}
+
+	// Nothing changed since the last pass, which should cost next to nothing
+	@Benchmark
+	public void flushUnchanged(Idle idle) {
+		idle.display.flush(now, 0);
+	}
+
+	// A second of queue time passes between passes, and only players whose text changed are sent a packet
+	@Benchmark
+	public void flushAfterTick(Diffing diffing) {
+		now += 1000;
+		timer.advance(now);
+		diffing.display.flush(now, 0);
+	}
+
+	// Every player is re-sent their action bar, as happens once per refresh interval
+	@Benchmark
+	public void flushRefresh(Refreshing refreshing) {
+		refreshing.display.flush(now, 0);
+	}
+}
@@ -0,0 +1,211 @@
+// QueueFixtures.java
+package org.projectpersistence.queue;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import org.spongepowered.configurate.CommentedConfigurationNode;
+import org.spongepowered.configurate.yaml.YamlConfigurationLoader;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.*;
+
+// Queue populations and lightweight Velocity fakes for the benchmarks, so they run without a proxy.
+// Tier rates come from the queue-points.yml named by -Dqueue.points, or the plugin's default tiers. A config
+// doesn't say how many players hold each tier, so players without a tier make up DEFAULT_SHARE of the queue
+// and the rest are split across the tiers in proportion to their seconds per point, making faster tiers rarer.
+final class QueueFixtures {
+
+	static final double DEFAULT_SHARE = 0.7;
+
+	// How far back join times are spread, so queues hold a realistic spread of points
+	static final long MAX_WAIT_MILLIS = 2 * 60 * 60 * 1000L;
+
+	private QueueFixtures() {
+	}
+
+	static final class TierMix {
+		final int[] rates;
+		final double[] cumulative;
+
+		TierMix(Map<String, Integer> tiers, int defaultSeconds) {
+			rates = new int[tiers.size() + 1];
+			cumulative = new double[rates.length];
+
+			double tierSeconds = 0;
+			int i = 0;
+
+			for (int seconds: tiers.values()) {
+				rates[i++] = seconds;
+				tierSeconds += seconds;
+			}
+
+			rates[i] = defaultSeconds;
+
+			double share = tiers.isEmpty() ? 1 : DEFAULT_SHARE;
+			double sum = 0;
+
+			for (int t = 0; t < tiers.size(); t++) {
+				sum += (1 - share) * rates[t] / tierSeconds;
+				cumulative[t] = sum;
+			}
+
+			cumulative[i] = 1;
+		}
+
+		int sample(Random random) {
+			double r = random.nextDouble();
+
+			for (int i = 0; i < cumulative.length; i++) {
+				if (r < cumulative[i]) return rates[i];
+			}
+
+			return rates[rates.length - 1];
+		}
+	}
+
+	static TierMix tierMix() {
+		String file = System.getProperty("queue.points");
+
+		if (file == null) {
+			// Same tiers as the default queue-points.yml
+			Map<String, Integer> tiers = new LinkedHashMap<>();
+			tiers.put("queue.vip.diamond", 10);
+			tiers.put("queue.vip.gold", 20);
+			tiers.put("queue.vip.silver", 30);
+			tiers.put("queue.vip", 45);
+			return new TierMix(tiers, 60);
+		}
+
+		try {
+			CommentedConfigurationNode root = YamlConfigurationLoader.builder()
+				.path(Path.of(file))
+				.build()
+				.load();
+
+			Map<String, Integer> tiers = new LinkedHashMap<>();
+
+			for (Map.Entry<Object, ? extends CommentedConfigurationNode> entry: root.node("tiers").childrenMap().entrySet()) {
+				tiers.put(entry.getKey().toString(), Math.max(1, entry.getValue().getInt(60)));
+			}
+
+			return new TierMix(tiers, Math.max(1, root.node("default-seconds").getInt(60)));
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to load " + file, e);
+		}
+	}
+
+	// Entries that joined at random points over the last MAX_WAIT_MILLIS, with rates drawn from the mix
+	static List<EntryRecord> records(int size, long now, TierMix mix, long seed) {
+		Random random = new Random(seed);
+		List<EntryRecord> records = new ArrayList<>(size);
+
+		for (int i = 0; i < size; i++) {
+			UUID playerId = new UUID(random.nextLong(), random.nextLong());
+			long joinTime = now - (long)(random.nextDouble() * MAX_WAIT_MILLIS);
+			records.add(new EntryRecord(playerId, joinTime, joinTime, mix.sample(random), false));
+		}
+
+		return records;
+	}
+
+	// A table holding the records, with each slot's points as of now ready to be indexed
+	static QueueEntryTable table(List<EntryRecord> records, long now) {
+		QueueEntryTable table = new QueueEntryTable();
+
+		for (EntryRecord record: records) {
+			int slot = table.put(record, null);
+			table.indexedPoints[slot] = table.pointsAt(slot, now);
+		}
+
+		return table;
+	}
+
+	static QueueIndex index(QueueEntryTable table) {
+		QueueIndex index = new QueueIndex(table);
+
+		for (int slot = 0; slot < table.slots(); slot++) {
+			if (table.isUsed(slot)) {
+				index.add(slot);
+			}
+		}
+
+		return index;
+	}
+
+	// A proxy whose getPlayer(UUID) finds a fake player for every entry; everything else is a no-op
+	static ProxyServer proxyServer(QueueEntryTable table) {
+		Map<UUID, Optional<Player>> players = new HashMap<>();
+
+		for (int slot = 0; slot < table.slots(); slot++) {
+			if (table.isUsed(slot)) {
+				UUID playerId = table.playerId(slot);
+				players.put(playerId, Optional.of(player(playerId)));
+			}
+		}
+
+		return fake(ProxyServer.class, (proxy, method, args) -> {
+			if (method.getName().equals("getPlayer") && args[0] instanceof UUID) {
+				return players.getOrDefault(args[0], Optional.empty());
+			}
+
+			return null;
+		});
+	}
+
+	// A player that drops every packet sent to it
+	static Player player(UUID playerId) {
+		String username = "player" + Long.toHexString(playerId.getMostSignificantBits() & 0xffffffL);
+
+		return fake(Player.class, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "getUniqueId":
+					return playerId;
+				case "getUsername":
+					return username;
+				default:
+					return null;
+			}
+		});
+	}
+
+	// Answers Object methods by identity and anything the handler leaves unanswered with an empty value
+	private static <T> T fake(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "equals":
+					if (method.getParameterCount() == 1) return proxy == args[0];
+					break;
+				case "hashCode":
+					if (method.getParameterCount() == 0) return System.identityHashCode(proxy);
+					break;
+				case "toString":
+					if (method.getParameterCount() == 0) return "Fake" + type.getSimpleName();
+					break;
+			}
+
+			Object result = handler.invoke(proxy, method, args);
+			return result != null ? result : empty(method);
+		}));
+	}
+
+	private static Object empty(Method method) {
+		Class<?> type = method.getReturnType();
+
+		if (type == boolean.class) return false;
+		if (type == int.class) return 0;
+		if (type == long.class) return 0L;
+		if (type == double.class) return 0.0;
+		if (type == float.class) return 0.0f;
+		if (type == short.class) return (short) 0;
+		if (type == byte.class) return (byte) 0;
+		if (type == char.class) return (char) 0;
+		if (type == Optional.class) return Optional.empty();
+		if (type == Collection.class || type == List.class) return List.of();
+		if (type == Set.class) return Set.of();
+		return null;
+	}
+}
@@ -0,0 +1,128 @@
+// QueueFootprint.java
+package org.projectpersistence.queue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Heap footprint of the queue's per-player state, as the live heap grows when a queue of each size is built.
+// Compares the entry table and the index over its slots with the layout they replaced: a QueueEntry object and
+// a UUID per player, a HashMap from UUID to entry, and a separate tree node per entry. Both columns count
+// everything a queued player costs, so the new one is the table's arrays and nothing else.
+// Run with ./gradlew footprint; numbers are only stable under a stop-the-world collector, which the task uses.
+public final class QueueFootprint {
+
+	private static final int[] SIZES = {10000, 50000, 100000};
+
+	// Keeps what is being measured reachable while the heap is sampled
+	private static Object retained;
+
+	private QueueFootprint() {
+	}
+
+	public static void main(String[] args) {
+		long now = System.currentTimeMillis();
+		QueueFixtures.TierMix mix = QueueFixtures.tierMix();
+
+		// Once untimed, so class loading and JIT allocations don't land in the first row
+		measure(SIZES[0], now, mix);
+
+		System.out.println(String.format("%8s %14s %14s", "entries", "old layout", "new layout"));
+
+		for (int size: SIZES) {
+			System.out.println(measure(size, now, mix));
+		}
+	}
+
+	private static String measure(int size, long now, QueueFixtures.TierMix mix) {
+		// The records only carry the inputs; each layout copies what it keeps, UUIDs included
+		List<EntryRecord> records = QueueFixtures.records(size, now, mix, 42);
+
+		long before = usedHeap();
+		retained = legacyLayout(records, now);
+		long legacyBytes = usedHeap() - before;
+		retained = null;
+
+		before = usedHeap();
+		QueueEntryTable table = QueueFixtures.table(records, now);
+		retained = new Object[] {table, QueueFixtures.index(table)};
+		long currentBytes = usedHeap() - before;
+		retained = null;
+
+		return String.format("%8d %10d B/e %10d B/e", size, legacyBytes / size, currentBytes / size);
+	}
+
+	private static Object[] legacyLayout(List<EntryRecord> records, long now) {
+		Map<UUID, LegacyEntry> byPlayer = new HashMap<>();
+		LegacyNode nodes = null;
+
+		for (EntryRecord record: records) {
+			UUID playerId = new UUID(record.playerId.getMostSignificantBits(), record.playerId.getLeastSignificantBits());
+			LegacyEntry entry = new LegacyEntry(playerId, record.joinTime, record.secondsPerPoint, record.front);
+			entry.indexedPoints = (int)((now - entry.pointsSince) / 1000 / entry.secondsPerPoint);
+			byPlayer.put(playerId, entry);
+
+			// Only the node count matters for the footprint, so they are chained rather than balanced
+			LegacyNode node = new LegacyNode(entry);
+			node.right = nodes;
+			nodes = node;
+		}
+
+		return new Object[] {byPlayer, nodes};
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+
+		// A few rounds, as one collection can leave garbage that only the next one reclaims
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	// Same fields as the QueueEntry object the queue kept per player before its entries moved into the table
+	@SuppressWarnings("unused")
+	private static final class LegacyEntry {
+		final UUID playerId;
+		final long joinTime;
+		final boolean front;
+		volatile int secondsPerPoint;
+		long pointsSince;
+		String username;
+		int indexedPoints;
+		boolean indexed;
+		long nextBoundary;
+		int timerSlot = -1;
+		LegacyEntry timerPrev;
+		LegacyEntry timerNext;
+		int displayedRank;
+		int displayedPoints = -1;
+		int displayedFlags;
+		int displayedEta = -1;
+		int tierRank;
+
+		LegacyEntry(UUID playerId, long joinTime, int secondsPerPoint, boolean front) {
+			this.playerId = playerId;
+			this.joinTime = joinTime;
+			this.front = front;
+			this.secondsPerPoint = secondsPerPoint;
+			this.pointsSince = joinTime;
+		}
+	}
+
+	// Same shape as the tree node QueueIndex allocated per entry before the index was made intrusive
+	private static final class LegacyNode {
+		final LegacyEntry entry;
+		LegacyNode left;
+		LegacyNode right;
+		int height = 1;
+		int size = 1;
+
+		LegacyNode(LegacyEntry entry) {
+			this.entry = entry;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+// QueueIndexBenchmark.java
+package org.projectpersistence.queue;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Ordering paths of the queue: finding the next player (processQueue), a player's position (getQueuePosition,
+// /queue info) and listing the whole queue in order (/queue list).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class QueueIndexBenchmark {
+
+	@Param({"1000", "10000", "100000"})
+	public int size;
+
+	private QueueEntryTable entries;
+
+	private QueueIndex index;
+
+	// Slots looked up by rank(), in a random order so lookups don't walk the same path
+	private int[] probes;
+
+	private int probe;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		long now = System.currentTimeMillis();
+		entries = QueueFixtures.table(QueueFixtures.records(size, now, QueueFixtures.tierMix(), 42), now);
+		index = QueueFixtures.index(entries);
+
+		probes = IntStream.range(0, entries.slots()).toArray();
+		Random random = new Random(7);
+
+		for (int i = probes.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = probes[i];
+			probes[i] = probes[j];
+			probes[j] = swap;
+		}
+	}
+
+	@Benchmark
+	public int nextInQueue() {
+		return index.peek();
+	}
+
+	// An admission taking the head out of the ordering, then failing and putting it back
+	@Benchmark
+	public int admitAndRestore() {
+		int head = index.poll();
+		index.add(head);
+		return head;
+	}
+
+	@Benchmark
+	public int queuePosition() {
+		int slot = probes[probe];
+		probe = probe + 1 == probes.length ? 0 : probe + 1;
+		return index.rank(slot);
+	}
+
+	// Baseline: how /queue list used to build its listing, sorting every entry on each call
+	@Benchmark
+	public List<UUID> listSorted() {
+		return IntStream.range(0, entries.slots())
+			.boxed()
+			.sorted(index::compare)
+			.map(entries::playerId)
+			.toList();
+	}
+
+	// The same listing read straight off the index
+	@Benchmark
+	public void listInOrder(Blackhole blackhole) {
+		index.forEachInOrder((slot, rank) -> blackhole.consume(entries.playerId(slot)));
+	}
+}
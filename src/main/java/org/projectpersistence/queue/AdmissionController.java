@@ -0,0 +1,64 @@
+// AdmissionController.java
+package org.projectpersistence.queue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Accounts for admissions whose connection to the main server is still in flight.
+// Every connect holds a slot in a bounded window so the backend isn't flooded with simultaneous logins, and
+// connects that count against capacity also reserve a player slot until they settle, so capacity checks see
+// them before the player shows up in the server's player count.
+class AdmissionController {
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final AtomicInteger reservedSlots = new AtomicInteger();
+
+	private volatile int connectWindow;
+
+	AdmissionController(int connectWindow) {
+		this.connectWindow = connectWindow;
+	}
+
+	void setConnectWindow(int connectWindow) {
+		this.connectWindow = connectWindow;
+	}
+
+	// Returns true if the caller may start a connect; it must then call release() exactly once when it settles
+	boolean tryReserve(int occupied, int capacity, boolean countsTowardCapacity) {
+		if (inFlight.incrementAndGet() > connectWindow) {
+			inFlight.decrementAndGet();
+			return false;
+		}
+
+		if (countsTowardCapacity) {
+			while (true) {
+				int reserved = reservedSlots.get();
+
+				if (occupied + reserved >= capacity) {
+					inFlight.decrementAndGet();
+					return false;
+				}
+
+				if (reservedSlots.compareAndSet(reserved, reserved + 1)) break;
+			}
+		}
+
+		return true;
+	}
+
+	void release(boolean countsTowardCapacity) {
+		if (countsTowardCapacity) {
+			reservedSlots.decrementAndGet();
+		}
+
+		inFlight.decrementAndGet();
+	}
+
+	int inFlight() {
+		return inFlight.get();
+	}
+
+	int reservedSlots() {
+		return reservedSlots.get();
+	}
+}
@@ -0,0 +1,81 @@
+// AdmissionRateLimiter.java
+package org.projectpersistence.queue;
+
+// Token bucket pacing how fast queued players are sent to the main server.
+// Tokens build up at the configured rate to at most the burst size, and every admission from the queue takes
+// one, so a main server coming back online (or a wave of departures) is filled at a steady pace instead of
+// with every free slot at once. A rate of zero or less means no limit.
+// Not thread safe; it is owned by the queue engine thread.
+class AdmissionRateLimiter {
+
+	private double ratePerSecond;
+
+	private int burst = 1;
+
+	private double tokens;
+
+	private long lastRefill;
+
+	// Takes effect immediately; tokens already built up are kept up to the new burst size
+	void configure(double ratePerSecond, int burst, long now) {
+		refill(now);
+
+		if (!limited()) {
+			// Coming from no limit, start with a full bucket rather than an empty one
+			tokens = burst;
+		}
+
+		this.ratePerSecond = ratePerSecond;
+		this.burst = Math.max(1, burst);
+		tokens = Math.min(tokens, this.burst);
+	}
+
+	boolean limited() {
+		return ratePerSecond > 0;
+	}
+
+	double ratePerSecond() {
+		return ratePerSecond;
+	}
+
+	int burst() {
+		return burst;
+	}
+
+	// Takes a token if one is available; give it back with refund() if the admission doesn't go ahead
+	boolean tryAcquire(long now) {
+		if (!limited()) return true;
+
+		refill(now);
+
+		if (tokens < 1) return false;
+
+		tokens -= 1;
+		return true;
+	}
+
+	void refund() {
+		if (limited()) {
+			tokens = Math.min(burst, tokens + 1);
+		}
+	}
+
+	// How long until the next token is available, 0 if one is available now
+	long millisUntilAvailable(long now) {
+		if (!limited()) return 0;
+
+		refill(now);
+
+		if (tokens >= 1) return 0;
+
+		return (long) Math.ceil((1 - tokens) * 1000 / ratePerSecond);
+	}
+
+	private void refill(long now) {
+		if (limited() && now > lastRefill) {
+			tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerSecond / 1000);
+		}
+
+		lastRefill = now;
+	}
+}
@@ -0,0 +1,111 @@
+// ConfigWatcher.java
+package org.projectpersistence.queue;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Watches the plugin's data directory and runs a reload when one of the configuration files changes.
+// Editors often save in several steps (truncate, write, rename), so changes are collected until the directory
+// has been quiet for QUIET_MILLIS and then trigger a single reload. Runs on its own daemon thread.
+class ConfigWatcher {
+
+	private static final long QUIET_MILLIS = 500;
+
+	private final Path directory;
+
+	private final Set<String> fileNames;
+
+	private final Runnable onChange;
+
+	private final Logger logger;
+
+	private WatchService watchService;
+
+	private volatile boolean watching;
+
+	ConfigWatcher(Path directory, Set<String> fileNames, Runnable onChange, Logger logger) {
+		this.directory = directory;
+		this.fileNames = fileNames;
+		this.onChange = onChange;
+		this.logger = logger;
+	}
+
+	void start() {
+		try {
+			watchService = directory.getFileSystem().newWatchService();
+			directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException e) {
+			logger.warn("Failed to watch the configuration files, use /queue reload after editing them: " + e.getMessage());
+			return;
+		}
+
+		Thread thread = new Thread(this::run, "queue-config-watcher");
+		thread.setDaemon(true);
+		thread.start();
+		watching = true;
+	}
+
+	// Whether changes to the files are being picked up, so writing one is enough to reload it
+	boolean isWatching() {
+		return watching;
+	}
+
+	void stop() {
+		watching = false;
+
+		if (watchService == null) return;
+
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			// Closing anyway
+		}
+	}
+
+	private void run() {
+		try {
+			while (true) {
+				boolean changed = relevant(watchService.take());
+				WatchKey key;
+
+				// Keep collecting until the directory goes quiet
+				while ((key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+					changed |= relevant(key);
+				}
+
+				if (changed) {
+					try {
+						onChange.run();
+					} catch (RuntimeException e) {
+						logger.error("Failed to reload the queue configuration", e);
+					}
+				}
+			}
+		} catch (ClosedWatchServiceException | InterruptedException e) {
+			// Stopped
+		}
+	}
+
+	private boolean relevant(WatchKey key) {
+		boolean relevant = false;
+
+		for (WatchEvent<?> event: key.pollEvents()) {
+			// An overflow means events were lost, so one of them may have been ours
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileNames.contains(event.context().toString())) {
+				relevant = true;
+			}
+		}
+
+		key.reset();
+		return relevant;
+	}
+}
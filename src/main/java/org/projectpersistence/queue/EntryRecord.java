@@ -0,0 +1,28 @@
+// EntryRecord.java
+package org.projectpersistence.queue;
+
+import java.util.UUID;
+
+// A queue entry's fields as one value, for moving an entry into and out of the QueueEntryTable: when a player
+// joins or leaves, when entries are restored from the journal, and when progress is taken back from a grace
+// cache. Entries in the queue are only kept in the table's arrays, never as one of these.
+class EntryRecord {
+	final UUID playerId;
+	final long joinTime;
+
+	// Points accrue at secondsPerPoint from this time; the join time until the entry's rate is changed
+	final long pointsSince;
+
+	final int secondsPerPoint;
+
+	// Admins queued while the main server is down stay ahead of everyone else
+	final boolean front;
+
+	EntryRecord(UUID playerId, long joinTime, long pointsSince, int secondsPerPoint, boolean front) {
+		this.playerId = playerId;
+		this.joinTime = joinTime;
+		this.pointsSince = pointsSince;
+		this.secondsPerPoint = secondsPerPoint;
+		this.front = front;
+	}
+}
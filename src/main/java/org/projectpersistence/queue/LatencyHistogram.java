@@ -0,0 +1,86 @@
+// LatencyHistogram.java
+package org.projectpersistence.queue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram in the style of HdrHistogram. Values below 2^SUB_BUCKET_BITS get a bucket each;
+// every power of two above that is split into 2^(SUB_BUCKET_BITS - 1) equal buckets, which keeps the
+// relative error of any reported value under 1/64 with a fixed array of counters.
+// Recording is a few shifts and an atomic increment, with no allocation, and may happen from any thread.
+class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 7;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private static final int HALF = SUB_BUCKETS / 2;
+
+	// Larger values are clamped into the last bucket
+	private static final int MAX_VALUE_BITS = 42;
+
+	private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS + (MAX_VALUE_BITS - SUB_BUCKET_BITS) * HALF);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong sum = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	void record(long value) {
+		long clamped = Math.max(0, Math.min(value, MAX_VALUE));
+
+		counts.incrementAndGet(index(clamped));
+		count.incrementAndGet();
+		sum.addAndGet(clamped);
+		max.accumulateAndGet(clamped, Math::max);
+	}
+
+	long count() {
+		return count.get();
+	}
+
+	long sum() {
+		return sum.get();
+	}
+
+	long max() {
+		return max.get();
+	}
+
+	// The value at the given quantile (0 to 1), reported as the highest value its bucket can hold
+	long quantile(double quantile) {
+		long total = count.get();
+
+		if (total == 0) return 0;
+
+		long target = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+
+			if (seen >= target) return Math.min(highestValue(i), max.get());
+		}
+
+		return max.get();
+	}
+
+	private static int index(long value) {
+		if (value < SUB_BUCKETS) return (int) value;
+
+		int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int subBucket = (int)(value >>> shift);
+		return SUB_BUCKETS + (shift - 1) * HALF + (subBucket - HALF);
+	}
+
+	private static long highestValue(int index) {
+		if (index < SUB_BUCKETS) return index;
+
+		int shift = (index - SUB_BUCKETS) / HALF + 1;
+		long subBucket = (index - SUB_BUCKETS) % HALF + HALF;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,167 @@
+// MainServerHealth.java
+package org.projectpersistence.queue;
+
+// Health of the main server as seen by its status pings.
+// The server is only marked offline after several pings in a row fail, and only back online after several in a
+// row succeed, so a single lost or lucky ping doesn't flip the queue and notify every queued player. While the
+// server is up a failed ping is retried quickly to confirm it, and while it is down pings back off exponentially.
+// Admission is held from the first sign of trouble, a failed ping or a failed connect, until a ping succeeds
+// again, without waiting for the server to be declared offline.
+// Round trip times of recent successful pings are kept in a sliding window. Once their average climbs past the
+// target, admissionFactor() drops towards a floor so the queue admits more slowly while the backend struggles.
+// Not thread safe; it is owned by the queue engine thread.
+class MainServerHealth {
+
+	// Admission never slows below this share of the configured pace
+	static final double MIN_ADMISSION_FACTOR = 0.1;
+
+	private long intervalMillis = 5000;
+
+	private long retryMillis = 1000;
+
+	private long maxBackoffMillis = 30000;
+
+	private int upThreshold = 2;
+
+	private int downThreshold = 3;
+
+	private long rttTargetMillis = 100;
+
+	private long rttLimitMillis = 1000;
+
+	private long[] rtts = new long[12];
+
+	private int rttCount;
+
+	private int rttNext;
+
+	private long rttSum;
+
+	private boolean online = true;
+
+	// Consecutive results that disagree with the current state, or consecutive failures while offline
+	private int successes;
+
+	private int failures;
+
+	// Set by a failed connect to the server, until a ping shows it is still answering
+	private boolean connectFailed;
+
+	// Max players the server reported in its last ping, or -1 if it hasn't reported any; also read by /queue status
+	private volatile int reportedMaxPlayers = -1;
+
+	void configure(long intervalMillis, long maxBackoffMillis, int upThreshold, int downThreshold, int window,
+		long rttTargetMillis, long rttLimitMillis) {
+		this.intervalMillis = Math.max(100, intervalMillis);
+		this.retryMillis = Math.min(1000, this.intervalMillis);
+		this.maxBackoffMillis = Math.max(this.intervalMillis, maxBackoffMillis);
+		this.upThreshold = Math.max(1, upThreshold);
+		this.downThreshold = Math.max(1, downThreshold);
+		this.rttTargetMillis = Math.max(1, rttTargetMillis);
+		this.rttLimitMillis = Math.max(this.rttTargetMillis + 1, rttLimitMillis);
+
+		if (Math.max(1, window) != rtts.length) {
+			rtts = new long[Math.max(1, window)];
+			rttCount = 0;
+			rttNext = 0;
+			rttSum = 0;
+		}
+	}
+
+	// Returns true if this ping brought the server back online
+	boolean succeeded(long rttMillis, int maxPlayers) {
+		failures = 0;
+		connectFailed = false;
+		reportedMaxPlayers = maxPlayers;
+
+		if (rttCount == rtts.length) {
+			rttSum -= rtts[rttNext];
+		} else {
+			rttCount++;
+		}
+
+		rtts[rttNext] = rttMillis;
+		rttSum += rttMillis;
+		rttNext = (rttNext + 1) % rtts.length;
+
+		if (online) return false;
+
+		if (++successes < upThreshold) return false;
+
+		online = true;
+		successes = 0;
+		return true;
+	}
+
+	// Returns true if this ping took the server offline
+	boolean failed() {
+		successes = 0;
+		failures++;
+
+		if (!online || failures < downThreshold) return false;
+
+		online = false;
+
+		// Latencies from before the outage say nothing about the server once it's back
+		rttCount = 0;
+		rttNext = 0;
+		rttSum = 0;
+		return true;
+	}
+
+	// Marks the server offline straight away, for when it isn't even registered with the proxy
+	boolean unavailable() {
+		successes = 0;
+		failures = Math.max(failures + 1, downThreshold);
+
+		if (!online) return false;
+
+		online = false;
+		return true;
+	}
+
+	void connectFailed() {
+		connectFailed = true;
+	}
+
+	boolean online() {
+		return online;
+	}
+
+	// Whether the queue may admit: online, and nothing has failed since the last successful ping
+	boolean admitting() {
+		return online && failures == 0 && !connectFailed;
+	}
+
+	// Delay before the next ping: quick while a change of state is being confirmed, backing off while offline
+	long nextCheckMillis() {
+		if (online) {
+			return failures > 0 ? retryMillis : intervalMillis;
+		}
+
+		if (successes > 0) return retryMillis;
+
+		int doublings = Math.min(20, Math.max(0, failures - downThreshold));
+		return Math.min(maxBackoffMillis, intervalMillis << doublings);
+	}
+
+	// Average round trip time over the window, or -1 before any successful ping
+	long averageRttMillis() {
+		return rttCount == 0 ? -1 : rttSum / rttCount;
+	}
+
+	// 1 while the average round trip is at or under the target, falling linearly to MIN_ADMISSION_FACTOR at the limit
+	double admissionFactor() {
+		long rtt = averageRttMillis();
+
+		if (rtt <= rttTargetMillis) return 1;
+		if (rtt >= rttLimitMillis) return MIN_ADMISSION_FACTOR;
+
+		double over = (double)(rtt - rttTargetMillis) / (rttLimitMillis - rttTargetMillis);
+		return 1 - over * (1 - MIN_ADMISSION_FACTOR);
+	}
+
+	int reportedMaxPlayers() {
+		return reportedMaxPlayers;
+	}
+}
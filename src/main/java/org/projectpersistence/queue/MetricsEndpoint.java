@@ -0,0 +1,102 @@
+// MetricsEndpoint.java
+package org.projectpersistence.queue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Optional Prometheus scrape endpoint at http://127.0.0.1:<port>/metrics, served by the JDK's built-in HTTP
+// server on a single daemon thread. It only listens on the loopback address.
+class MetricsEndpoint {
+
+	// Every queue target's metrics
+	private final Collection<QueueMetrics> metrics;
+
+	private final Logger logger;
+
+	private HttpServer httpServer;
+
+	private ExecutorService executor;
+
+	private int port = -1;
+
+	MetricsEndpoint(Collection<QueueMetrics> metrics, Logger logger) {
+		this.metrics = metrics;
+		this.logger = logger;
+	}
+
+	// Starts, stops or moves the endpoint to match the configuration; a port of 0 or less disables it
+	synchronized void configure(int port) {
+		if (port == this.port) return;
+
+		stop();
+
+		if (port <= 0) return;
+
+		try {
+			HttpServer created = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+			created.createContext("/metrics", this::handle);
+
+			executor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "queue-metrics-http");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+			created.setExecutor(executor);
+			created.start();
+			httpServer = created;
+			this.port = port;
+			logger.info("Serving queue metrics on http://127.0.0.1:" + port + "/metrics");
+		} catch (IOException e) {
+			logger.error("Failed to start the queue metrics endpoint on port " + port, e);
+			stop();
+		}
+	}
+
+	synchronized void stop() {
+		if (httpServer != null) {
+			httpServer.stop(0);
+			httpServer = null;
+		}
+
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+
+		port = -1;
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+
+			byte[] body = QueueMetrics.prometheus(metrics).getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+
+			if (exchange.getRequestMethod().equals("HEAD")) {
+				exchange.sendResponseHeaders(200, -1);
+				return;
+			}
+
+			exchange.sendResponseHeaders(200, body.length);
+
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+// PermissionProfiles.java
+package org.projectpersistence.queue;
+
+import com.velocitypowered.api.proxy.Player;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Per-player cache of the permission checks the queue makes on its hot paths.
+// A profile is resolved once into a small bitset plus the index of the player's point tier, and is resolved
+// again after a config reload, after a permission change is signalled, or once it is older than the TTL
+// (which is how edits made in the permission plugin are picked up).
+class PermissionProfiles {
+
+	static final int ADMIN = 1;
+
+	static final int BYPASS = 2;
+
+	static final int PRIORITY = 4;
+
+	private final Map<UUID, Profile> profiles = new ConcurrentHashMap<>();
+
+	private final Clock clock;
+
+	// Point tiers in priority order, swapped together whenever the point configuration is reloaded
+	private volatile Tiers tiers = new Tiers(new String[0], new int[0], 60);
+
+	private volatile long ttlMillis;
+
+	// Bumped to invalidate every cached profile at once
+	private volatile int generation;
+
+	PermissionProfiles(long ttlMillis, Clock clock) {
+		this.ttlMillis = ttlMillis;
+		this.clock = clock;
+	}
+
+	void setTtlMillis(long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+	}
+
+	void setTiers(Map<String, Integer> pointTiers, int defaultSeconds) {
+		String[] permissions = new String[pointTiers.size()];
+		int[] seconds = new int[pointTiers.size()];
+		int i = 0;
+
+		for (Map.Entry<String, Integer> tier: pointTiers.entrySet()) {
+			permissions[i] = tier.getKey();
+			seconds[i] = tier.getValue();
+			i++;
+		}
+
+		tiers = new Tiers(permissions, seconds, defaultSeconds);
+		invalidateAll();
+	}
+
+	Profile get(Player player) {
+		long now = clock.millis();
+		Profile profile = profiles.get(player.getUniqueId());
+
+		if (profile == null || profile.generation != generation || now - profile.resolvedAt >= ttlMillis) {
+			profile = resolve(player, now);
+			profiles.put(player.getUniqueId(), profile);
+		}
+
+		return profile;
+	}
+
+	void invalidate(UUID playerId) {
+		profiles.remove(playerId);
+	}
+
+	void invalidateAll() {
+		generation++;
+	}
+
+	private Profile resolve(Player player, long now) {
+		// Read the generation first, so a reload racing with this resolve leaves the profile already stale
+		int resolvedGeneration = generation;
+		Tiers current = tiers;
+		int flags = 0;
+
+		if (player.hasPermission("queue.admin")) {
+			flags |= ADMIN;
+		}
+
+		if (player.hasPermission("queue.bypass")) {
+			flags |= BYPASS;
+		}
+
+		if (player.hasPermission("queue.priority")) {
+			flags |= PRIORITY;
+		}
+
+		// Check tier permissions in order (highest priority first)
+		int tierIndex = -1;
+
+		for (int i = 0; i < current.permissions.length; i++) {
+			if (player.hasPermission(current.permissions[i])) {
+				tierIndex = i;
+				break;
+			}
+		}
+
+		int secondsPerPoint = tierIndex == -1 ? current.defaultSeconds : current.seconds[tierIndex];
+		return new Profile(flags, tierIndex, secondsPerPoint, now, resolvedGeneration);
+	}
+
+	static final class Profile {
+		final int flags;
+
+		// Index into the configured point tiers, or -1 for the default rate
+		final int tierIndex;
+
+		final int secondsPerPoint;
+
+		final long resolvedAt;
+
+		final int generation;
+
+		Profile(int flags, int tierIndex, int secondsPerPoint, long resolvedAt, int generation) {
+			this.flags = flags;
+			this.tierIndex = tierIndex;
+			this.secondsPerPoint = secondsPerPoint;
+			this.resolvedAt = resolvedAt;
+			this.generation = generation;
+		}
+
+		boolean isAdmin() {
+			return (flags & ADMIN) != 0;
+		}
+
+		boolean isBypass() {
+			return (flags & BYPASS) != 0;
+		}
+
+		boolean hasPriorityPermission() {
+			return (flags & PRIORITY) != 0;
+		}
+	}
+
+	private static final class Tiers {
+		final String[] permissions;
+		final int[] seconds;
+		final int defaultSeconds;
+
+		Tiers(String[] permissions, int[] seconds, int defaultSeconds) {
+			this.permissions = permissions;
+			this.seconds = seconds;
+			this.defaultSeconds = defaultSeconds;
+		}
+	}
+}
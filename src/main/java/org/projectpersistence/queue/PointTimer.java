@@ -0,0 +1,109 @@
+// PointTimer.java
+package org.projectpersistence.queue;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Hashed timer wheel that fires when a queue entry crosses its next point boundary.
+// Each bucket is an intrusive doubly linked list threaded through the entry table's timer arrays by slot, so
+// scheduling and cancelling are O(1) and advancing only touches the buckets whose ticks have passed.
+// Not thread safe; it is owned by the queue engine thread.
+class PointTimer {
+
+	private static final int NONE = QueueEntryTable.NONE;
+
+	private final QueueEntryTable entries;
+
+	private final long tickMillis;
+
+	// First slot in each bucket, or NONE
+	private final int[] buckets;
+
+	private final int mask;
+
+	private final IntConsumer onBoundary;
+
+	private long currentTick;
+
+	// size must be a power of two; entries further out than one revolution simply wait for a later pass
+	PointTimer(QueueEntryTable entries, int size, long tickMillis, long now, IntConsumer onBoundary) {
+		this.entries = entries;
+		this.tickMillis = tickMillis;
+		this.buckets = new int[size];
+		this.mask = size - 1;
+		this.onBoundary = onBoundary;
+		this.currentTick = now / tickMillis;
+		Arrays.fill(buckets, NONE);
+	}
+
+	void schedule(int slot, long deadline) {
+		unlink(slot);
+
+		// Round up so an entry never fires before its boundary, and never into a bucket already passed
+		long tick = Math.max((deadline + tickMillis - 1) / tickMillis, currentTick + 1);
+		int bucket = (int)(tick & mask);
+
+		entries.nextBoundary[slot] = deadline;
+		entries.timerBucket[slot] = bucket;
+		entries.timerPrev[slot] = NONE;
+		entries.timerNext[slot] = buckets[bucket];
+
+		if (buckets[bucket] != NONE) {
+			entries.timerPrev[buckets[bucket]] = slot;
+		}
+
+		buckets[bucket] = slot;
+	}
+
+	void cancel(int slot) {
+		unlink(slot);
+	}
+
+	// Fires every entry whose boundary is at or before now
+	void advance(long now) {
+		long targetTick = now / tickMillis;
+		long ticks = Math.min(targetTick - currentTick, buckets.length);
+
+		for (long i = 1; i <= ticks; i++) {
+			int bucket = (int)((currentTick + i) & mask);
+			int slot = buckets[bucket];
+
+			while (slot != NONE) {
+				int next = entries.timerNext[slot];
+
+				if (entries.nextBoundary[slot] <= now) {
+					unlink(slot);
+					// The callback usually reschedules the entry at its following boundary
+					onBoundary.accept(slot);
+				}
+
+				slot = next;
+			}
+		}
+
+		currentTick = Math.max(currentTick, targetTick);
+	}
+
+	private void unlink(int slot) {
+		int bucket = entries.timerBucket[slot];
+
+		if (bucket == NONE) return;
+
+		int prev = entries.timerPrev[slot];
+		int next = entries.timerNext[slot];
+
+		if (prev != NONE) {
+			entries.timerNext[prev] = next;
+		} else {
+			buckets[bucket] = next;
+		}
+
+		if (next != NONE) {
+			entries.timerPrev[next] = prev;
+		}
+
+		entries.timerPrev[slot] = NONE;
+		entries.timerNext[slot] = NONE;
+		entries.timerBucket[slot] = NONE;
+	}
+}
@@ -0,0 +1,141 @@
+// PositionDisplay.java
+package org.projectpersistence.queue;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+// Action bar stage for queued players. Flushes run at a fixed cadence and only walk the queue when the
+// index or the queue status changed since the last pass. A player is only sent a packet when the text
+// they would see differs from what they were last sent, or when the action bar is due a refresh before
+// it fades on the client. The same walk gives the wait estimator every entry's place in its tier, and each
+// player's estimate is shown rounded so it doesn't force a packet on every pass.
+// Runs on the queue engine thread, which owns the index it walks.
+class PositionDisplay {
+
+	static final int PAUSED = 1;
+
+	static final int OFFLINE = 2;
+
+	private final ProxyServer server;
+
+	private final QueueEntryTable entries;
+
+	private final QueueIndex index;
+
+	private final WaitEstimator estimator;
+
+	private long refreshMillis;
+
+	private long lastRefresh;
+
+	private long seenModCount = -1;
+
+	private int seenFlags = -1;
+
+	// Reused between flushes so a pass does not allocate for players whose text is unchanged
+	private int[] pending = new int[256];
+
+	private int[] pendingRank = new int[256];
+
+	private int[] pendingPoints = new int[256];
+
+	private int[] pendingEta = new int[256];
+
+	private int pendingCount;
+
+	PositionDisplay(ProxyServer server, QueueEntryTable entries, QueueIndex index, WaitEstimator estimator, long refreshMillis) {
+		this.server = server;
+		this.entries = entries;
+		this.index = index;
+		this.estimator = estimator;
+		this.refreshMillis = refreshMillis;
+	}
+
+	void setRefreshMillis(long refreshMillis) {
+		this.refreshMillis = refreshMillis;
+	}
+
+	void flush(long now, int flags) {
+		boolean refresh = now - lastRefresh >= refreshMillis;
+		long modCount = index.modCount();
+
+		if (!refresh && modCount == seenModCount && flags == seenFlags) return;
+
+		if (refresh) {
+			lastRefresh = now;
+		}
+
+		seenModCount = modCount;
+		seenFlags = flags;
+
+		index.forEachInOrder((slot, rank) -> {
+			int points = entries.indexedPoints[slot];
+			estimator.observe(slot);
+
+			// No estimate is shown while the queue isn't moving
+			int eta = flags == 0 ? WaitEstimator.displayMinutes(estimator.etaSeconds(slot, rank)) : -1;
+
+			if (refresh || entries.displayedRank[slot] != rank || entries.displayedPoints[slot] != points ||
+				entries.displayedFlags[slot] != flags || entries.displayedEta[slot] != eta) {
+				entries.displayedRank[slot] = rank;
+				entries.displayedPoints[slot] = points;
+				entries.displayedFlags[slot] = (byte) flags;
+				entries.displayedEta[slot] = eta;
+				enqueue(slot, rank, points, eta);
+			}
+		});
+
+		estimator.endPass(now, flags == 0, index.size() > 0);
+
+		// Packets are sent once the walk is done, so the index isn't visited while writing to players.
+		// The queue can't change in between, as both run on the engine thread
+		for (int i = 0; i < pendingCount; i++) {
+			Optional<Player> player = server.getPlayer(entries.playerId(pending[i]));
+
+			if (player.isPresent()) {
+				player.get().sendActionBar(render(pendingRank[i], pendingPoints[i], pendingEta[i], flags));
+			}
+		}
+
+		pendingCount = 0;
+	}
+
+	private void enqueue(int slot, int rank, int points, int eta) {
+		if (pendingCount == pending.length) {
+			int capacity = pending.length * 2;
+			pending = Arrays.copyOf(pending, capacity);
+			pendingRank = Arrays.copyOf(pendingRank, capacity);
+			pendingPoints = Arrays.copyOf(pendingPoints, capacity);
+			pendingEta = Arrays.copyOf(pendingEta, capacity);
+		}
+
+		pending[pendingCount] = slot;
+		pendingRank[pendingCount] = rank;
+		pendingPoints[pendingCount] = points;
+		pendingEta[pendingCount] = eta;
+		pendingCount++;
+	}
+
+	private static Component render(int rank, int points, int eta, int flags) {
+		String statusText = "Queue #" + rank + " | Points: " + points;
+
+		if (eta >= 0) {
+			statusText += " | ETA: " + WaitEstimator.format(eta);
+		}
+
+		if ((flags & PAUSED) != 0) {
+			statusText += " (PAUSED)";
+		}
+
+		if ((flags & OFFLINE) != 0) {
+			statusText += " (OFFLINE)";
+		}
+
+		return Component.text(statusText, NamedTextColor.GOLD);
+	}
+}
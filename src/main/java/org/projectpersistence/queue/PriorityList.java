@@ -0,0 +1,243 @@
+// PriorityList.java
+package org.projectpersistence.queue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.UUID;
+
+// Immutable set of priority player UUIDs that holds no Java object per player, for lists of hundreds of
+// thousands of supporters synced from a store.
+// UUIDs are kept as 16-byte records (most then least significant bits, big endian) sorted by signed comparison
+// and found by binary search. A Bloom filter in front answers most lookups for players who aren't on the list,
+// which is nearly everyone logging in, without touching the records. A list read from a file is memory-mapped
+// instead of copied onto the heap, so loading one is a single pass to check it and build the filter.
+// The file format is a 16-byte header (MAGIC, VERSION, record count as a long) followed by the records.
+final class PriorityList {
+
+	static final PriorityList EMPTY = new PriorityList(ByteBuffer.allocate(0), 0);
+
+	private static final int MAGIC = 0x51505249; // "QPRI"
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_BYTES = 16;
+
+	private static final int RECORD_BYTES = 16;
+
+	// About a 1% false positive rate
+	private static final int BLOOM_BITS_PER_ENTRY = 10;
+
+	private static final int BLOOM_HASHES = 7;
+
+	private final ByteBuffer records;
+
+	private final int count;
+
+	private final long[] bloom;
+
+	private final long bloomMask;
+
+	private PriorityList(ByteBuffer records, int count) {
+		this.records = records;
+		this.count = count;
+
+		// A power of two of at least BLOOM_BITS_PER_ENTRY bits per record
+		long bits = Long.highestOneBit(Math.max(64L, (long) count * BLOOM_BITS_PER_ENTRY) - 1) << 1;
+		bloom = new long[(int)(bits >>> 6)];
+		bloomMask = bits - 1;
+
+		for (int i = 0; i < count; i++) {
+			addToBloom(records.getLong(i * RECORD_BYTES), records.getLong(i * RECORD_BYTES + 8));
+		}
+	}
+
+	static PriorityList of(Collection<UUID> playerIds) {
+		long[] sorted = sortedBits(playerIds);
+		int count = sorted.length / 2;
+		ByteBuffer records = ByteBuffer.allocate(count * RECORD_BYTES);
+
+		for (long bits: sorted) {
+			records.putLong(bits);
+		}
+
+		return new PriorityList(records, count);
+	}
+
+	// Maps a list written by write(), checking its header, length and order
+	static PriorityList map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long length = channel.size();
+
+			if (length < HEADER_BYTES) {
+				throw new IOException(file.getFileName() + " is too short to be a priority list");
+			}
+
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+
+			if (header.getInt(0) != MAGIC) {
+				throw new IOException(file.getFileName() + " is not a priority list");
+			}
+
+			if (header.getInt(4) != VERSION) {
+				throw new IOException(file.getFileName() + " has unsupported version " + header.getInt(4));
+			}
+
+			long count = header.getLong(8);
+
+			if (count < 0 || count > (Integer.MAX_VALUE - HEADER_BYTES) / RECORD_BYTES || length != HEADER_BYTES + count * RECORD_BYTES) {
+				throw new IOException(file.getFileName() + " holds " + length + " bytes, which doesn't match its " + count + " records");
+			}
+
+			// The mapping stays valid after the channel is closed
+			ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, count * RECORD_BYTES);
+
+			for (int i = 1; i < count; i++) {
+				int at = i * RECORD_BYTES;
+
+				if (compare(records.getLong(at - RECORD_BYTES), records.getLong(at - RECORD_BYTES + 8), records.getLong(at), records.getLong(at + 8)) >= 0) {
+					throw new IOException(file.getFileName() + " is not sorted at record " + i);
+				}
+			}
+
+			return new PriorityList(records, (int) count);
+		}
+	}
+
+	// Writes the UUIDs as a list map() can read. The file is written next to the target and moved over it, so
+	// a running plugin never maps a half-written list
+	static void write(Path file, Collection<UUID> playerIds) throws IOException {
+		long[] sorted = sortedBits(playerIds);
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + sorted.length * 8);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putLong(sorted.length / 2);
+
+		for (long bits: sorted) {
+			buffer.putLong(bits);
+		}
+
+		buffer.flip();
+
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+
+			channel.force(true);
+		}
+
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	boolean contains(UUID playerId) {
+		long most = playerId.getMostSignificantBits();
+		long least = playerId.getLeastSignificantBits();
+
+		if (!mightContain(most, least)) return false;
+
+		int low = 0;
+		int high = count - 1;
+
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int at = middle * RECORD_BYTES;
+			int compare = compare(records.getLong(at), records.getLong(at + 8), most, least);
+
+			if (compare < 0) {
+				low = middle + 1;
+			} else if (compare > 0) {
+				high = middle - 1;
+			} else {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	int size() {
+		return count;
+	}
+
+	// Every UUID on the list, in record order
+	UUID[] toArray() {
+		UUID[] playerIds = new UUID[count];
+
+		for (int i = 0; i < count; i++) {
+			playerIds[i] = new UUID(records.getLong(i * RECORD_BYTES), records.getLong(i * RECORD_BYTES + 8));
+		}
+
+		return playerIds;
+	}
+
+	private void addToBloom(long most, long least) {
+		long hash = mix(most ^ mix(least));
+		long step = mix(hash) | 1;
+
+		for (int i = 0; i < BLOOM_HASHES; i++) {
+			long bit = (hash + i * step) & bloomMask;
+			bloom[(int)(bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	// False only for players who aren't on the list; package-private so tests can reach the binary search
+	boolean mightContain(long most, long least) {
+		long hash = mix(most ^ mix(least));
+		long step = mix(hash) | 1;
+
+		for (int i = 0; i < BLOOM_HASHES; i++) {
+			long bit = (hash + i * step) & bloomMask;
+
+			if ((bloom[(int)(bit >>> 6)] & (1L << bit)) == 0) return false;
+		}
+
+		return true;
+	}
+
+	// Murmur3's 64-bit finalizer; offline-mode UUIDs share most of their bits, so these need spreading
+	private static long mix(long bits) {
+		bits ^= bits >>> 33;
+		bits *= 0xff51afd7ed558ccdL;
+		bits ^= bits >>> 33;
+		bits *= 0xc4ceb9fe1a85ec53L;
+		bits ^= bits >>> 33;
+		return bits;
+	}
+
+	private static int compare(long most1, long least1, long most2, long least2) {
+		int compare = Long.compare(most1, most2);
+		return compare != 0 ? compare : Long.compare(least1, least2);
+	}
+
+	// Most and least significant bits of each distinct UUID, sorted in record order
+	private static long[] sortedBits(Collection<UUID> playerIds) {
+		UUID[] sorted = playerIds.toArray(new UUID[0]);
+		Arrays.sort(sorted, (id1, id2) -> compare(id1.getMostSignificantBits(), id1.getLeastSignificantBits(),
+			id2.getMostSignificantBits(), id2.getLeastSignificantBits()));
+
+		long[] bits = new long[sorted.length * 2];
+		int count = 0;
+
+		for (UUID playerId: sorted) {
+			long most = playerId.getMostSignificantBits();
+			long least = playerId.getLeastSignificantBits();
+
+			if (count > 0 && bits[count * 2 - 2] == most && bits[count * 2 - 1] == least) continue;
+
+			bits[count * 2] = most;
+			bits[count * 2 + 1] = least;
+			count++;
+		}
+
+		return Arrays.copyOf(bits, count * 2);
+	}
+}
@@ -6,29 +6,50 @@ import com.velocitypowered.api.command.CommandManager;
 import com.velocitypowered.api.command.CommandMeta;
 import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.command.SimpleCommand;
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.connection.PostLoginEvent;
+import com.velocitypowered.api.event.permission.PermissionsSetupEvent;
+import com.velocitypowered.api.event.player.KickedFromServerEvent;
 import com.velocitypowered.api.event.player.ServerConnectedEvent;
 import com.velocitypowered.api.event.player.ServerPostConnectEvent;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyPreShutdownEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
+import com.velocitypowered.api.proxy.ConnectionRequestBuilder;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import com.velocitypowered.api.scheduler.ScheduledTask;
 import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.JoinConfiguration;
+import net.kyori.adventure.text.event.ClickEvent;
 import net.kyori.adventure.text.format.NamedTextColor;
 import org.slf4j.Logger;
-import org.spongepowered.configurate.CommentedConfigurationNode;
-import org.spongepowered.configurate.yaml.YamlConfigurationLoader;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 @Plugin(
 	id = "queue",
@@ -49,31 +70,57 @@ public class Queue {
 
 	private final Path dataDirectory;
 
-	private final Map<UUID, QueueEntry> queueEntries = new ConcurrentHashMap<>();
+	// Every queue timestamp comes from here, so the queue can be run on simulated time
+	private final Clock clock;
 
-	private final Set<UUID> priorityPlayers = new HashSet<>();
+	// False when the engines are drained by hand instead of by their own threads
+	private final boolean startEngine;
 
-	private final Set<UUID> playersInQueue = Collections.synchronizedSet(new HashSet<>());
+	// Queue targets by name in configuration order, the default first. Created when the configuration is first
+	// loaded; each owns its queue on its own engine thread, so the targets' queues are processed in parallel
+	private volatile Map<String, QueueTarget> targets = Map.of();
 
-	private String mainServerName;
+	// The target each player queues for. Set when they log in or pick one with /queue join, and kept while
+	// their progress is parked, so they come back to the same queue
+	private final Map<UUID, QueueTarget> routes = new ConcurrentHashMap<>();
 
-	private String queueServerName;
+	// Parsed off the engines and swapped in whole; read by event threads when checking priority, so they
+	// always see one consistent configuration
+	private volatile QueueConfig config;
 
-	private int mainServerMaxPlayers;
+	// Picks up edits to the configuration files
+	private ConfigWatcher configWatcher;
 
-	private boolean queuePaused = false;
+	// Held while a reload reads the files and hands them to the engines, so overlapping reloads from the
+	// watcher and commands are applied in the order they were loaded
+	private final Object reloadLock = new Object();
 
-	private boolean mainServerOnline = true;
+	// Player counts per backend server, shared by all targets
+	private final ServerOccupancy occupancy = new ServerOccupancy();
 
-	// Point system configuration: permission -> seconds per point
-	private final Map<String, Integer> pointTiers = new LinkedHashMap<>();
+	// Set once the proxy starts shutting down, so the disconnects it causes don't erase saved queue state
+	private volatile boolean shuttingDown = false;
+
+	// Every target's metrics, for the Prometheus endpoint
+	private final List<QueueMetrics> targetMetrics = new CopyOnWriteArrayList<>();
+
+	// Optional Prometheus endpoint on localhost, off unless enabled in server-config.yml
+	private final MetricsEndpoint metricsEndpoint;
 
 	@Inject
 
 	public Queue(ProxyServer server, Logger logger, @DataDirectory Path dataDirectory) {
+		this(server, logger, dataDirectory, Clock.systemUTC(), true);
+	}
+
+	// Used by the simulation harness to run the plugin on its own clock and drain the engines itself
+	Queue(ProxyServer server, Logger logger, Path dataDirectory, Clock clock, boolean startEngine) {
 		this.server = server;
 		this.logger = logger;
 		this.dataDirectory = dataDirectory;
+		this.clock = clock;
+		this.startEngine = startEngine;
+		this.metricsEndpoint = new MetricsEndpoint(targetMetrics, logger);
 	}
 
 	@Subscribe
@@ -87,9 +134,31 @@ public class Queue {
 		}
 
 		// Load configurations
-		loadServerConfig();
-		loadPriorityConfig();
-		loadPointConfig();
+		config = QueueConfig.load(dataDirectory, logger, null);
+		metricsEndpoint.configure(config.metricsHttpEnabled ? config.metricsHttpPort : 0);
+
+		Map<String, QueueTarget> created = new LinkedHashMap<>();
+
+		for (QueueConfig.Target settings: config.targets.values()) {
+			QueueTarget target = new QueueTarget(settings.name);
+			target.applyConfig(settings, config);
+			created.put(settings.name, target);
+			targetMetrics.add(target.metrics);
+		}
+
+		targets = Collections.unmodifiableMap(created);
+
+		// Bring back queue progress saved before the last restart
+		for (QueueTarget target: targets.values()) {
+			target.restoreQueueState();
+		}
+
+		// From here on each queue is only changed through its engine
+		if (startEngine) {
+			for (QueueTarget target: targets.values()) {
+				target.engine.start();
+			}
+		}
 
 		// Register commands
 		CommandManager commandManager = server.getCommandManager();
@@ -98,61 +167,78 @@ public class Queue {
 			.build();
 		commandManager.register(commandMeta, new QueueCommand());
 
-		// Start queue processor
-		server.getScheduler()
-			.buildTask(this, this::processQueue)
-			.repeat(2, TimeUnit.SECONDS)
-			.schedule();
+		// Expose the queue metrics over JMX
+		for (QueueTarget target: targets.values()) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(target.metrics, new ObjectName(target.metrics.objectName()));
+			} catch (JMException e) {
+				logger.warn("Failed to register queue metrics with JMX: " + e.getMessage());
+			}
+		}
 
-		// Start server status checker
-		server.getScheduler()
-			.buildTask(this, this::checkMainServerStatus)
-			.repeat(5, TimeUnit.SECONDS)
-			.schedule();
+		// Start each target's queue processor, server status checker, point accumulator and action bars
+		for (QueueTarget target: targets.values()) {
+			target.start();
+		}
 
-		// Start point accumulator
+		// Start occupancy reconciliation, which catches any drift in the event driven player counts
 		server.getScheduler()
-			.buildTask(this, this::accumulatePoints)
-			.repeat(1, TimeUnit.SECONDS)
+			.buildTask(this, this::reconcileOccupancy)
+			.repeat(30, TimeUnit.SECONDS)
 			.schedule();
 
-		logger.info("Queue Plugin has been enabled!");
+		// Reload the configuration whenever its files are edited
+		if (startEngine) {
+			configWatcher = new ConfigWatcher(dataDirectory, Set.of(QueueConfig.SERVER_FILE, QueueConfig.PRIORITY_FILE,
+				QueueConfig.PRIORITY_LIST_FILE, QueueConfig.POINTS_FILE),
+				() -> reloadConfig(null), logger);
+			configWatcher.start();
+		}
+
+		logger.info("Queue Plugin has been enabled with targets " + String.join(", ", targets.keySet()) + "!");
 	}
 
 	@Subscribe
 
-	public void onPostLogin(PostLoginEvent event) {
-		Player player = event.getPlayer();
+	public void onProxyPreShutdown(ProxyPreShutdownEvent event) {
+		// Players are about to be disconnected by the shutdown, keep their queue state for the next start
+		shuttingDown = true;
+	}
 
-		// bypass permission skips queue entirely
-		if (player.hasPermission("queue.bypass")) {
-			connectToMainServer(player, true, true);
-			return;
+	@Subscribe
+
+	public void onProxyShutdown(ProxyShutdownEvent event) {
+		if (configWatcher != null) {
+			configWatcher.stop();
 		}
 
-		// Check if player has priority (permission or config list)
-		boolean hasPriority = player.hasPermission("queue.priority") ||
-			priorityPlayers.contains(player.getUniqueId());
+		for (QueueTarget target: targets.values()) {
+			// Let queued commands reach the journal before it is closed
+			target.engine.stop(5000);
+			target.journal.close();
+			target.broadcaster.close();
 
-		if (hasPriority && mainServerOnline) {
-			connectToMainServer(player, true, false);
-			return;
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(target.metrics.objectName()));
+			} catch (JMException e) {
+				// Never registered
+			}
 		}
 
-		// Check if main server has space
-		Optional<RegisteredServer> mainServer = server.getServer(mainServerName);
+		metricsEndpoint.stop();
+	}
 
-		if (mainServer.isPresent() && mainServerOnline) {
-			int currentPlayers = mainServer.get().getPlayersConnected().size();
+	@Subscribe
 
-			if (currentPlayers < mainServerMaxPlayers) {
-				connectToMainServer(player, false, false);
-				return;
-			}
-		}
+	public void onPostLogin(PostLoginEvent event) {
+		Player player = event.getPlayer();
 
-		// Add to queue
-		addToQueue(player);
+		// Players whose progress is parked go back to the target they were queued for
+		QueueTarget target = routes.computeIfAbsent(player.getUniqueId(), playerId -> defaultTarget());
+		PermissionProfiles.Profile profile = target.profiles.get(player);
+
+		// The capacity check and the queueing happen in one engine command, so nothing can change in between
+		target.engine.execute(() -> target.route(player, profile));
 	}
 
 	@Subscribe
@@ -160,62 +246,59 @@ public class Queue {
 	public void onServerConnected(ServerConnectedEvent event) {
 		Player player = event.getPlayer();
 		String serverName = event.getServer().getServerInfo().getName();
+		String previous = occupancy.moved(player.getUniqueId(), serverName);
 
-		// If player is connecting to queue server, add them to queue
-		if (serverName.equals(queueServerName)) {
-			server.getScheduler()
-				.buildTask(this, () -> {
-					// Bypass players go to front of queue if server is down
-					if (player.hasPermission("queue.bypass")) {
-						if (!mainServerOnline) {
-							addToQueueFront(player);
-						} else {
-							connectToMainServer(player, true, true);
-						}
+		if (previous != null) {
+			mainServerSlotFreed(previous);
+		}
 
-						return;
-					}
+		// If player is connecting to the queue server of the target they queue for, add them to its queue
+		QueueTarget target = routes.get(player.getUniqueId());
 
-					// Admins go to front of queue if server is down
-					if (player.hasPermission("queue.admin")) {
-						if (!mainServerOnline) {
-							addToQueueFront(player);
-						}
+		if (target == null) {
+			target = targetQueuingOn(serverName);
 
-						return;
-					}
+			if (target == null) return;
 
-					// Check if player has priority (permission or config list)
-					boolean hasPriority = player.hasPermission("queue.priority") ||
-					priorityPlayers.contains(player.getUniqueId());
+			routes.putIfAbsent(player.getUniqueId(), target);
+		}
 
-					// Don't queue priority players who can join directly
-					if (hasPriority && mainServerOnline) {
-						Optional<RegisteredServer> mainServer = server.getServer(mainServerName);
+		if (!target.settings.isQueueServer(serverName)) return;
 
-						if (mainServer.isPresent()) {
-							connectToMainServer(player, true, false);
-							return;
-						}
-					}
+		QueueTarget queueTarget = target;
 
-					// Re-add to queue if not already there
-					if (!playersInQueue.contains(player.getUniqueId())) {
-						addToQueue(player);
-					} else {
-						// Update their position
-						int position = getQueuePosition(player.getUniqueId());
+		// Whatever placed them on this queue server has been settled
+		queueTarget.engine.execute(() -> queueTarget.queueServers.settled(player.getUniqueId()));
 
-						if (position != -1) {
-							QueueEntry entry = queueEntries.get(player.getUniqueId());
-							player.sendMessage(Component.text("You are in the queue. Position: " + position +
-								" | Points: " + entry.points, NamedTextColor.YELLOW));
-						}
-					}
-				})
-				.delay(1, TimeUnit.SECONDS)
-				.schedule();
-		}
+		server.getScheduler()
+			.buildTask(this, () -> {
+				PermissionProfiles.Profile profile = queueTarget.profiles.get(player);
+				queueTarget.engine.execute(() -> queueTarget.arrivedOnQueueServer(player, profile));
+			})
+			.delay(1, TimeUnit.SECONDS)
+			.schedule();
+	}
+
+	@Subscribe
+
+	public EventTask onKickedFromServer(KickedFromServerEvent event) {
+		Player player = event.getPlayer();
+		String serverName = event.getServer().getServerInfo().getName();
+		QueueTarget target = routes.get(player.getUniqueId());
+
+		// Only players kicked off one of several queue servers are moved, to another of them
+		if (target == null || target.settings.queueServerNames.size() < 2 || !target.settings.isQueueServer(serverName)) return null;
+
+		return EventTask.resumeWhenComplete(target.engine.submit(() -> {
+			RegisteredServer queueServer = target.replaceQueueServer(player.getUniqueId(), serverName);
+
+			if (queueServer != null) {
+				event.setResult(KickedFromServerEvent.RedirectPlayer.create(queueServer,
+					Component.text("Your queue server went away, moving you to another one. Your place in the queue is kept.", NamedTextColor.YELLOW)));
+			}
+
+			return null;
+		}));
 	}
 
 	@Subscribe
@@ -226,10 +309,16 @@ public class Queue {
 			.map(s -> s.getServerInfo().getName())
 			.orElse("");
 
-		// Only remove from tracking if player successfully connected to main server
-		if (currentServerName.equals(mainServerName)) {
-			playersInQueue.remove(player.getUniqueId());
-			queueEntries.remove(player.getUniqueId());
+		// Confirms the move counted when the player connected
+		if (!currentServerName.isEmpty()) {
+			occupancy.moved(player.getUniqueId(), currentServerName);
+		}
+
+		// Only remove from tracking if player successfully connected to a main server
+		for (QueueTarget target: targets.values()) {
+			if (currentServerName.equals(target.settings.mainServerName)) {
+				target.engine.execute(() -> target.admitFromQueue(player.getUniqueId()));
+			}
 		}
 	}
 
@@ -238,452 +327,1170 @@ public class Queue {
 	public void onDisconnect(DisconnectEvent event) {
 		Player player = event.getPlayer();
 		UUID playerId = player.getUniqueId();
+		String previous = occupancy.left(playerId);
 
-		// Remove player from queue when they disconnect
-		queueEntries.remove(playerId);
-		playersInQueue.remove(playerId);
+		if (previous != null) {
+			mainServerSlotFreed(previous);
+		}
+
+		for (QueueTarget target: targets.values()) {
+			target.profiles.invalidate(playerId);
+		}
+
+		// Remove player from queue when they disconnect, keeping their progress in case they come back
+		QueueTarget target = routes.get(playerId);
+
+		if (target != null) {
+			target.engine.execute(() -> target.parkFromQueue(playerId));
+		}
 	}
 
-	private void addToQueue(Player player) {
-		if (!playersInQueue.contains(player.getUniqueId())) {
-			// Determine seconds per point based on permissions
-			int secondsPerPoint = getSecondsPerPoint(player);
-
-			QueueEntry entry = new QueueEntry(player.getUniqueId(), secondsPerPoint);
-			queueEntries.put(player.getUniqueId(), entry);
-			playersInQueue.add(player.getUniqueId());
-
-			Optional<RegisteredServer> queueServer = server.getServer(queueServerName);
-
-			if (queueServer.isPresent()) {
-				// Only connect if not already on queue server
-				if (player.getCurrentServer().isEmpty() ||
-					!player.getCurrentServer().get().getServerInfo().getName().equals(queueServerName)) {
-					player.createConnectionRequest(queueServer.get()).connect().thenAccept(result -> {
-						if (result.isSuccessful()) {
-							int position = getQueuePosition(player.getUniqueId());
-							player.sendMessage(Component.text("You have been added to the queue. Position: " + position +
-								" | Points per " + secondsPerPoint + "s", NamedTextColor.YELLOW));
-
-							if (queuePaused) {
-								player.sendMessage(Component.text("The queue is currently paused.", NamedTextColor.RED));
-							}
+	@Subscribe
 
-							if (!mainServerOnline) {
-								player.sendMessage(Component.text("The main server is currently offline.", NamedTextColor.RED));
-							}
-						}
-					});
-				} else {
-					int position = getQueuePosition(player.getUniqueId());
-					player.sendMessage(Component.text("You have been added to the queue. Position: " + position +
-						" | Points per " + secondsPerPoint + "s", NamedTextColor.YELLOW));
-				}
+	public void onPermissionsSetup(PermissionsSetupEvent event) {
+		// The player's permission provider changed, resolve their profile again on next use
+		if (event.getSubject() instanceof Player) {
+			for (QueueTarget target: targets.values()) {
+				target.profiles.invalidate(((Player) event.getSubject()).getUniqueId());
 			}
 		}
 	}
 
-	private void addToQueueFront(Player player) {
-		if (!playersInQueue.contains(player.getUniqueId())) {
-			// Admins get maximum priority (1 second per point)
-			QueueEntry entry = new QueueEntry(player.getUniqueId(), 1);
-			entry.points = Integer.MAX_VALUE; // Give them max points to be first
-			queueEntries.put(player.getUniqueId(), entry);
-			playersInQueue.add(player.getUniqueId());
+	private QueueTarget defaultTarget() {
+		return targets.values().iterator().next();
+	}
 
-			player.sendMessage(Component.text("You have been added to the front of the queue (Admin Priority).", NamedTextColor.GREEN));
+	// Names are matched ignoring case, as typed in commands; null if there is no such target
+	private QueueTarget findTarget(String name) {
+		for (QueueTarget target: targets.values()) {
+			if (target.name.equalsIgnoreCase(name)) return target;
 		}
+
+		return null;
 	}
 
-	private int getSecondsPerPoint(Player player) {
-		// Check permissions in order (highest priority first)
-		for (Map.Entry<String, Integer> tier: pointTiers.entrySet()) {
-			if (player.hasPermission(tier.getKey())) {
-				return tier.getValue();
+	// The first target whose players wait on the given server, or null
+	private QueueTarget targetQueuingOn(String serverName) {
+		for (QueueTarget target: targets.values()) {
+			if (target.settings.isQueueServer(serverName)) return target;
+		}
+
+		return null;
+	}
+
+	private void mainServerSlotFreed(String serverName) {
+		for (QueueTarget target: targets.values()) {
+			if (serverName.equals(target.settings.mainServerName)) {
+				target.engine.execute(target::onMainServerSlotFreed);
 			}
 		}
-		// Default if no permissions match
-		return 60; // 1 point per 60 seconds default
 	}
 
-	private void connectToMainServer(Player player, boolean isPriority, boolean isAdmin) {
-		connectToMainServer(player, isPriority, isAdmin, false);
+	private void reconcileOccupancy() {
+		// Every server anyone is counted on, and the servers the targets read counts of even while empty
+		Set<String> serverNames = occupancy.serverNames();
+
+		for (QueueTarget target: targets.values()) {
+			serverNames.add(target.settings.mainServerName);
+			serverNames.addAll(target.settings.queueServerNames);
+		}
+
+		Map<String, Collection<Player>> connected = new HashMap<>();
+
+		for (String serverName: serverNames) {
+			server.getServer(serverName).ifPresent(registered -> connected.put(serverName, registered.getPlayersConnected()));
+		}
+
+		occupancy.reconcile(connected);
 	}
 
-	private void connectToMainServer(Player player, boolean isPriority, boolean isAdmin, boolean forceBypass) {
-		// If main server is offline and not admin/forced, send to queue
-		if (!mainServerOnline && !forceBypass) {
-			if (isPriority) {
-				player.sendMessage(Component.text("Main server is offline. Sending you to the queue server.", NamedTextColor.YELLOW));
-				addToQueue(player);
+	// Runs the commands already submitted to every target's engine on the calling thread, returning how many
+	// ran. Used by the simulation harness, which drives the engines itself.
+	int drainEngines() {
+		int ran = 0;
+
+		for (QueueTarget target: targets.values()) {
+			ran += target.engine.drain();
+		}
+
+		return ran;
+	}
+
+	// Players tracked by all targets' queues, as last published by their engines
+	int queuedPlayers() {
+		int queued = 0;
+
+		for (QueueTarget target: targets.values()) {
+			queued += target.engine.snapshot().size;
+		}
+
+		return queued;
+	}
+
+	// Seconds the player is estimated to still wait, or -1 if unknown or not queued; only while the engines are
+	// drained by hand. Used by the simulation harness to check estimates against actual waits.
+	long estimatedWaitSeconds(UUID playerId) {
+		QueueTarget target = routes.get(playerId);
+		return target == null ? -1 : target.estimatedWaitSeconds(playerId);
+	}
+
+	// Reads the configuration files on the calling thread, then applies them on every target's engine and runs
+	// applied (which may be null) once all of them have
+	private void reloadConfig(Runnable applied) {
+		List<CompletableFuture<Void>> applying = new ArrayList<>();
+
+		synchronized (reloadLock) {
+			QueueConfig loaded = QueueConfig.load(dataDirectory, logger, config);
+			config = loaded;
+			metricsEndpoint.configure(loaded.metricsHttpEnabled ? loaded.metricsHttpPort : 0);
+
+			// The set of targets, and with it their engines, journals and JMX names, is fixed at startup
+			for (String name: loaded.targets.keySet()) {
+				if (!targets.containsKey(name)) {
+					logger.warn("Queue target " + name + " was added to " + QueueConfig.SERVER_FILE + ", restart the proxy to start its queue");
+				}
 			}
 
-			return;
+			// Each engine runs these in submission order, so holding the lock keeps them in load order too
+			for (QueueTarget target: targets.values()) {
+				QueueConfig.Target settings = loaded.targets.get(target.name);
+
+				if (settings == null) {
+					logger.warn("Queue target " + target.name + " was removed from " + QueueConfig.SERVER_FILE + ", it keeps its settings until the proxy restarts");
+					settings = target.settings;
+				}
+
+				QueueConfig.Target next = settings;
+				applying.add(target.engine.submit(() -> {
+					target.applyConfig(next, loaded);
+					return null;
+				}));
+			}
+		}
+
+		if (applied != null) {
+			CompletableFuture.allOf(applying.toArray(new CompletableFuture<?>[0])).thenRun(applied);
 		}
+	}
 
-		Optional<RegisteredServer> mainServer = server.getServer(mainServerName);
+	// One main server with its own queue: capacity, tiers, pause state, health checks and ordering. Everything
+	// here is owned by the target's engine thread; targets only share the configuration, the server player
+	// counts and the routes
+	private final class QueueTarget {
 
-		if (mainServer.isPresent()) {
-			// Admins and forced pulls can bypass max player limit
-			if (!isAdmin && !forceBypass) {
-				int currentPlayers = mainServer.get().getPlayersConnected().size();
+		final String name;
 
-				if (currentPlayers >= mainServerMaxPlayers && !isPriority) {
-					addToQueue(player);
+		// Owns every queue structure below; they are only read and changed on its thread
+		final QueueEngine engine;
+
+		// This target's settings, swapped on the engine by applyConfig() and read by event threads
+		volatile QueueConfig.Target settings;
+
+		private final QueueEntryTable queueEntries = new QueueEntryTable();
+
+		private final QueueIndex queueIndex = new QueueIndex(queueEntries);
+
+		// Names of queued players for /queue pull completion
+		private final UsernameIndex queuedNames = new UsernameIndex();
+
+		// Fires only when a queued player actually earns a point, so ordering updates scale with point changes
+		private final PointTimer pointTimer;
+
+		// Ping results with up/down thresholds, backoff and round trip times that pace admission
+		private final MainServerHealth health = new MainServerHealth();
+
+		// The next scheduled check, and a generation that lets a check made early supersede it
+		private ScheduledTask healthCheckTask;
+
+		private int healthCheckGeneration;
+
+		private boolean healthCheckInFlight;
+
+		// Where queued players wait; the position display and notices reach them on whichever server they are
+		private final QueueServerPool queueServers = new QueueServerPool();
+
+		private final PositionDisplay positionDisplay;
+
+		// Wait time estimates, kept up to date by the position display pass
+		private final WaitEstimator waitEstimator = new WaitEstimator(queueEntries);
+
+		private ScheduledTask positionDisplayTask;
+
+		// Owned by the engine like the queue itself; other threads see them through the published snapshot
+		private boolean queuePaused = false;
+
+		private boolean mainServerOnline = true;
+
+		private final AdmissionController admissions = new AdmissionController(20);
+
+		private boolean admissionPending = false;
+
+		// Paces admissions from the queue, at the configured rate or the drain rate while draining
+		private final AdmissionRateLimiter rateLimiter = new AdmissionRateLimiter();
+
+		// Admissions per second set by /queue drain, or 0 when not draining; read by /queue status off the engine
+		private volatile double drainRate = 0;
+
+		private final SlotIdleTracker slotIdle = new SlotIdleTracker();
+
+		private final QueueJournal journal;
+
+		// Progress of players who disconnected, kept for them to reconnect
+		private final ReconnectGraceCache reconnectCache;
+
+		// Progress of players who were queued before the last restart. Kept apart from the reconnect cache and
+		// sized to hold all of them, so a large restore is never cut down by reconnect-grace-max-entries
+		private final ReconnectGraceCache restoredCache;
+
+		// Resolved admin, bypass, priority and point tier permissions per player, under this target's tiers
+		private final PermissionProfiles profiles;
+
+		private final QueueMetrics metrics;
+
+		// Coalesces and fans out notices to this target's queued players off the engine
+		private final QueueBroadcaster broadcaster;
+
+		QueueTarget(String name) {
+			this.name = name;
+			this.engine = new QueueEngine("queue-engine-" + name, logger, this::publishSnapshot);
+			this.pointTimer = new PointTimer(queueEntries, 256, 1000, clock.millis(), this::onPointBoundary);
+			this.profiles = new PermissionProfiles(TimeUnit.MINUTES.toMillis(1), clock);
+			this.positionDisplay = new PositionDisplay(server, queueEntries, queueIndex, waitEstimator, 2000);
+			this.journal = new QueueJournal(dataDirectory.resolve("state").resolve(name), logger);
+			this.reconnectCache = new ReconnectGraceCache(TimeUnit.MINUTES.toMillis(5), 50000, this::onGraceExpired);
+			this.restoredCache = new ReconnectGraceCache(TimeUnit.MINUTES.toMillis(10), 0, this::onGraceExpired);
+			this.metrics = new QueueMetrics(clock, name);
+			this.broadcaster = new QueueBroadcaster(logger, startEngine);
+		}
+
+		void start() {
+			// Start queue processor, a safety net behind the admissions triggered by departures
+			server.getScheduler()
+				.buildTask(Queue.this, () -> engine.execute(this::processQueue))
+				.repeat(2, TimeUnit.SECONDS)
+				.schedule();
+
+			// Start server status checker, which schedules each check after the last one's result
+			scheduleHealthCheck(0);
+
+			// Start point accumulator
+			server.getScheduler()
+				.buildTask(Queue.this, () -> engine.execute(this::accumulatePoints))
+				.repeat(1, TimeUnit.SECONDS)
+				.schedule();
+
+			// Start action bar position updates
+			schedulePositionDisplay();
+
+			// Start queue server status checks, which only ping while there is more than one queue server
+			scheduleQueueServerCheck();
+
+			// Start reconnect grace expiry
+			server.getScheduler()
+				.buildTask(Queue.this, () -> engine.execute(() -> {
+					reconnectCache.expire(clock.millis());
+					restoredCache.expire(clock.millis());
+				}))
+				.repeat(10, TimeUnit.SECONDS)
+				.schedule();
+		}
+
+		// Queue state below is only touched on the engine thread
+
+		// Sends a player who wants to play on this target's main server there, or into its queue
+		void route(Player player, PermissionProfiles.Profile profile) {
+			// bypass permission skips queue entirely
+			if (profile.isBypass()) {
+				connectToMainServer(player, true, true);
+				return;
+			}
+
+			// Check if player has priority (permission or config list)
+			boolean hasPriority = profile.hasPriorityPermission() ||
+				config.isPriority(player.getUniqueId());
+
+			if (hasPriority && mainServerOnline) {
+				connectToMainServer(player, true, false);
+				return;
+			}
+
+			// Check if main server has space
+			Optional<RegisteredServer> mainServer = server.getServer(settings.mainServerName);
+
+			if (mainServer.isPresent() && mainServerOnline) {
+				int currentPlayers = occupancy.get(settings.mainServerName);
+
+				if (currentPlayers < mainServerCapacity()) {
+					connectToMainServer(player, false, false);
 					return;
 				}
 			}
 
-			player.createConnectionRequest(mainServer.get()).connect().thenAccept(result -> {
-				if (result.isSuccessful()) {
-					playersInQueue.remove(player.getUniqueId());
-					queueEntries.remove(player.getUniqueId());
-
-					if (forceBypass) {
-						player.sendMessage(Component.text(
-							"You have been pulled from the queue by an admin!",
-							NamedTextColor.GREEN));
-					} else if (isAdmin) {
-						player.sendMessage(Component.text(
-							"Connected to main server with admin access!",
-							NamedTextColor.GOLD));
-					} else if (isPriority) {
-						player.sendMessage(Component.text(
-							"Connected to main server with priority access!",
-							NamedTextColor.GREEN));
-					} else {
-						player.sendMessage(Component.text(
-							"Connected to main server!",
-							NamedTextColor.GREEN));
-					}
+			// Add to queue
+			addToQueue(player);
+		}
+
+		void arrivedOnQueueServer(Player player, PermissionProfiles.Profile profile) {
+			// They may have moved on during the delay, e.g. straight to the main server after logging in
+			boolean onQueueServer = player.getCurrentServer()
+				.map(s -> settings.isQueueServer(s.getServerInfo().getName()))
+				.orElse(false);
+
+			if (!onQueueServer) return;
+
+			// Bypass players go to front of queue if server is down
+			if (profile.isBypass()) {
+				if (!mainServerOnline) {
+					addToQueueFront(player);
 				} else {
-					// Connection failed, add back to queue
-					if (!isAdmin && !forceBypass) {
-						player.sendMessage(Component.text(
-							"Failed to connect to main server. Adding you to the queue.",
-							NamedTextColor.RED));
-						addToQueue(player);
-					}
+					connectToMainServer(player, true, true);
 				}
-			});
-		} else {
-			// Server doesn't exist, add to queue
-			if (!isAdmin && !forceBypass) {
+
+				return;
+			}
+
+			// Admins go to front of queue if server is down
+			if (profile.isAdmin()) {
+				if (!mainServerOnline) {
+					addToQueueFront(player);
+				}
+
+				return;
+			}
+
+			// Check if player has priority (permission or config list)
+			boolean hasPriority = profile.hasPriorityPermission() ||
+				config.isPriority(player.getUniqueId());
+
+			// Don't queue priority players who can join directly
+			if (hasPriority && mainServerOnline) {
+				Optional<RegisteredServer> mainServer = server.getServer(settings.mainServerName);
+
+				if (mainServer.isPresent()) {
+					connectToMainServer(player, true, false);
+					return;
+				}
+			}
+
+			// Re-add to queue if not already there
+			if (!queueEntries.containsKey(player.getUniqueId())) {
 				addToQueue(player);
+			} else {
+				// Update their position
+				int position = getQueuePosition(player.getUniqueId());
+
+				if (position != -1) {
+					int slot = queueEntries.slot(player.getUniqueId());
+					player.sendMessage(Component.text("You are in the queue. Position: " + position +
+						" | Points: " + queueEntries.pointsAt(slot, clock.millis()), NamedTextColor.YELLOW));
+				}
 			}
 		}
-	}
 
-	private void processQueue() {
-		// Don't process if queue is paused or main server is offline
-		if (queuePaused || !mainServerOnline) {
-			return;
+		private void addToQueue(Player player) {
+			if (!queueEntries.containsKey(player.getUniqueId())) {
+				// Players coming back within the grace window keep their original join time and tier
+				EntryRecord entry = takeParked(player.getUniqueId());
+
+				if (entry != null) {
+					player.sendMessage(Component.text("Welcome back! Your queue progress has been kept.", NamedTextColor.GREEN));
+				} else {
+					// Determine seconds per point based on permissions
+					long now = clock.millis();
+					entry = new EntryRecord(player.getUniqueId(), now, now, getSecondsPerPoint(player), false);
+				}
+
+				int secondsPerPoint = entry.secondsPerPoint;
+				trackEntry(entry, player.getUsername());
+
+				boolean onQueueServer = player.getCurrentServer()
+					.map(s -> settings.isQueueServer(s.getServerInfo().getName()))
+					.orElse(false);
+
+				// Only connect if not already on a queue server
+				if (onQueueServer) {
+					int position = getQueuePosition(player.getUniqueId());
+					player.sendMessage(Component.text("You have been added to the queue. Position: " + position +
+						" | Points per " + secondsPerPoint + "s", NamedTextColor.YELLOW));
+				} else {
+					RegisteredServer queueServer = placeOnQueueServer(player.getUniqueId(), null);
+
+					if (queueServer != null) {
+						player.createConnectionRequest(queueServer).connect().whenComplete((result, throwable) -> {
+							engine.execute(() -> {
+								queueServers.settled(player.getUniqueId());
+
+								if (throwable != null || !result.isSuccessful()) return;
+
+								int position = getQueuePosition(player.getUniqueId());
+								player.sendMessage(Component.text("You have been added to the queue. Position: " + position +
+									" | Points per " + secondsPerPoint + "s", NamedTextColor.YELLOW));
+
+								if (queuePaused) {
+									player.sendMessage(Component.text("The queue is currently paused.", NamedTextColor.RED));
+								}
+
+								if (!mainServerOnline) {
+									player.sendMessage(Component.text("The main server is currently offline.", NamedTextColor.RED));
+								}
+							});
+						});
+					}
+				}
+			} else {
+				// Already queued (e.g. an admission fell through), make sure they are back in line
+				restoreQueuePosition(player.getUniqueId());
+			}
+		}
+
+		private void addToQueueFront(Player player) {
+			if (!queueEntries.containsKey(player.getUniqueId())) {
+				// Admins get maximum priority (1 second per point) and are ordered ahead of everyone else
+				long now = clock.millis();
+				takeParked(player.getUniqueId());
+				trackEntry(new EntryRecord(player.getUniqueId(), now, now, 1, true), player.getUsername());
+
+				player.sendMessage(Component.text("You have been added to the front of the queue (Admin Priority).", NamedTextColor.GREEN));
+			}
+		}
+
+		// Username is null for entries restored before their player reconnects
+		private void trackEntry(EntryRecord entry, String username) {
+			int slot = queueEntries.put(entry, username);
+			int points = queueEntries.pointsAt(slot, clock.millis());
+			queueEntries.indexedPoints[slot] = points;
+			queueIndex.add(slot);
+			pointTimer.schedule(slot, queueEntries.boundaryAfter(slot, points));
+
+			if (username != null) {
+				queuedNames.add(username);
+			}
+
+			journal.join(entry);
+			metrics.joined(entry.front, entry.secondsPerPoint);
+
+			// A player arriving on a shared queue server may not have been routed here yet
+			routes.put(entry.playerId, this);
 		}
 
-		Optional<RegisteredServer> mainServer = server.getServer(mainServerName);
+		// Frees the player's slot, returning what it held, or null if they weren't queued
+		private EntryRecord removeFromQueue(UUID playerId) {
+			int slot = queueEntries.slot(playerId);
+
+			if (slot == QueueEntryTable.NONE) return null;
 
-		if (!mainServer.isPresent()) return;
+			EntryRecord entry = queueEntries.record(slot);
+			String username = queueEntries.username(slot);
+			queueIndex.remove(slot);
+			pointTimer.cancel(slot);
+			queueEntries.remove(slot);
+			metrics.left(entry.front, entry.secondsPerPoint);
 
-		int currentPlayers = mainServer.get().getPlayersConnected().size();
+			if (username != null) {
+				queuedNames.remove(username);
+			}
 
-		while (currentPlayers < mainServerMaxPlayers && !queueEntries.isEmpty()) {
-			UUID nextPlayerId = getNextInQueue();
+			return entry;
+		}
 
-			if (nextPlayerId == null) break;
+		void admitFromQueue(UUID playerId) {
+			EntryRecord entry = removeFromQueue(playerId);
 
-			Optional<Player> nextPlayer = server.getPlayer(nextPlayerId);
+			if (entry != null) {
+				journal.admit(playerId);
+				metrics.admitted(entry.front, entry.secondsPerPoint, entry.joinTime, clock.millis());
+				waitEstimator.admitted(entry.front, entry.secondsPerPoint);
+			}
+		}
 
-			if (nextPlayer.isPresent()) {
-				boolean isAdmin = nextPlayer.get().hasPermission("queue.admin");
-				boolean isBypass = nextPlayer.get().hasPermission("queue.bypass");
+		void parkFromQueue(UUID playerId) {
+			EntryRecord entry = removeFromQueue(playerId);
+			queueServers.settled(playerId);
 
-				connectToMainServer(
-					nextPlayer.get(),
-					false, // not a priority pull
-					isAdmin, // true only for real admins
-					isBypass // true only for queue.bypass holders
-				);
+			// Disconnects caused by a shutdown leave the saved state as it is
+			if (shuttingDown) return;
 
-				if (!isAdmin) {
-					currentPlayers++;
+			if (entry == null) {
+				// Nothing to come back to, unless progress parked here earlier is still waiting for them
+				if (!reconnectCache.contains(playerId) && !restoredCache.contains(playerId)) {
+					routes.remove(playerId, this);
 				}
 
-				// Update positions for the remaining queued players
-				updateQueuePositions();
+				return;
+			}
+
+			if (entry.front) {
+				journal.leave(playerId);
+				routes.remove(playerId, this);
 			} else {
-				// Player disconnected, remove from tracking
-				queueEntries.remove(nextPlayerId);
-				playersInQueue.remove(nextPlayerId);
+				// The journal keeps the entry until it expires from the grace cache
+				reconnectCache.park(playerId, entry.joinTime, entry.pointsSince, entry.secondsPerPoint, clock.millis());
 			}
 		}
-	}
 
-	private UUID getNextInQueue() {
-		if (queueEntries.isEmpty()) return null;
+		// Takes a player who chose another target out of this queue for good, returning whether they were queued
+		boolean leaveQueue(UUID playerId) {
+			EntryRecord entry = removeFromQueue(playerId);
+			EntryRecord parked = takeParked(playerId);
 
-		// Create a snapshot to avoid concurrent modification
-		List<QueueEntry> snapshot = new ArrayList<>(queueEntries.values());
+			if (entry != null || parked != null) {
+				journal.leave(playerId);
+			}
 
-		// Sort by points (descending), then by secondsPerPoint (ascending)
-		return snapshot.stream()
-			.sorted((e1, e2) -> {
-				int pointCompare = Integer.compare(e2.points, e1.points);
+			return entry != null;
+		}
 
-				if (pointCompare != 0) return pointCompare;
-				return Integer.compare(e1.secondsPerPoint, e2.secondsPerPoint);
-			})
-			.map(e -> e.playerId)
-			.findFirst()
-			.orElse(null);
-	}
+		// The player's parked progress from before a disconnect or a restart, or null if there is none
+		private EntryRecord takeParked(UUID playerId) {
+			long now = clock.millis();
+			EntryRecord entry = reconnectCache.take(playerId, now);
+			EntryRecord restored = restoredCache.take(playerId, now);
+			return entry != null ? entry : restored;
+		}
 
-	private void accumulatePoints() {
-		long currentTime = System.currentTimeMillis();
+		private void onGraceExpired(UUID playerId) {
+			journal.leave(playerId);
 
-		for (QueueEntry entry: queueEntries.values()) {
-			long timePassed = (currentTime - entry.joinTime) / 1000; // Convert to seconds
-			entry.points = (int)(timePassed / entry.secondsPerPoint);
+			// Players who are online again have been routed since
+			if (!server.getPlayer(playerId).isPresent()) {
+				routes.remove(playerId, this);
+			}
 		}
-	}
 
-	private void checkMainServerStatus() {
-		Optional<RegisteredServer> mainServer = server.getServer(mainServerName);
+		// Puts a player whose admission failed back into the queue ordering
+		private void restoreQueuePosition(UUID playerId) {
+			int slot = queueEntries.slot(playerId);
 
-		if (!mainServer.isPresent()) {
-			if (mainServerOnline) {
-				mainServerOnline = false;
-				logger.warn("Main server is not registered!");
-				notifyQueuePlayers(Component.text(
-					"The main server is offline. Queue processing paused.",
-					NamedTextColor.RED));
+			if (slot != QueueEntryTable.NONE) {
+				queueIndex.add(slot);
 			}
+		}
+
+		private String estimatedWait(int slot, int position) {
+			return WaitEstimator.format(WaitEstimator.displayMinutes(waitEstimator.etaSeconds(slot, position)));
+		}
 
-			return;
+		private int getSecondsPerPoint(Player player) {
+			// Resolved from the tier permissions in order (highest priority first), or the default rate
+			return profiles.get(player).secondsPerPoint;
 		}
 
-		mainServer.get().ping().thenAccept(ping -> {
+		private void connectToMainServer(Player player, boolean isPriority, boolean isAdmin) {
+			connectToMainServer(player, isPriority, isAdmin, false);
+		}
+
+		void connectToMainServer(Player player, boolean isPriority, boolean isAdmin, boolean forceBypass) {
+			connectToMainServer(player, isPriority, isAdmin, forceBypass, false);
+		}
+
+		// reserved: the caller holds an admission reservation for this connect, which is released once it settles
+		private void connectToMainServer(Player player, boolean isPriority, boolean isAdmin, boolean forceBypass, boolean reserved) {
+			// If main server is offline and not admin/forced, send to queue
+			if (!mainServerOnline && !forceBypass) {
+				if (reserved) {
+					admissions.release(!isAdmin);
+					restoreQueuePosition(player.getUniqueId());
+				}
+
+				if (isPriority) {
+					player.sendMessage(Component.text("Main server is offline. Sending you to the queue server.", NamedTextColor.YELLOW));
+					addToQueue(player);
+				}
+
+				return;
+			}
+
+			Optional<RegisteredServer> mainServer = server.getServer(settings.mainServerName);
+
+			if (mainServer.isPresent()) {
+				// Admins and forced pulls can bypass max player limit, and reserved connects already hold a slot
+				if (!isAdmin && !forceBypass && !reserved) {
+					int currentPlayers = occupancy.get(settings.mainServerName);
+
+					if (currentPlayers >= mainServerCapacity() && !isPriority) {
+						addToQueue(player);
+						return;
+					}
+				}
+
+				player.createConnectionRequest(mainServer.get()).connect().whenComplete((result, throwable) -> {
+					// The outcome is applied on the engine like any other queue change
+					engine.execute(() -> {
+						if (reserved) {
+							admissions.release(!isAdmin);
+							// The connect window has room again, and a failed connect leaves its slot open
+							requestAdmission();
+						}
+
+						metrics.connected(throwable == null && result.isSuccessful());
+
+						if (throwable == null && result.isSuccessful()) {
+							admitFromQueue(player.getUniqueId());
+
+							if (forceBypass) {
+								player.sendMessage(Component.text(
+									"You have been pulled from the queue by an admin!",
+									NamedTextColor.GREEN));
+							} else if (isAdmin) {
+								player.sendMessage(Component.text(
+									"Connected to main server with admin access!",
+									NamedTextColor.GOLD));
+							} else if (isPriority) {
+								player.sendMessage(Component.text(
+									"Connected to main server with priority access!",
+									NamedTextColor.GREEN));
+							} else {
+								player.sendMessage(Component.text(
+									"Connected to main server!",
+									NamedTextColor.GREEN));
+							}
+						} else {
+							// Connection failed, add back to queue
+							restoreQueuePosition(player.getUniqueId());
+
+							// Hold admissions and check the server now, rather than failing connects until the next ping
+							if (throwable != null || result.getStatus() == ConnectionRequestBuilder.Status.SERVER_DISCONNECTED) {
+								health.connectFailed();
+								checkMainServerStatusNow();
+							}
+
+							if (!isAdmin && !forceBypass) {
+								player.sendMessage(Component.text(
+									"Failed to connect to main server. Adding you to the queue.",
+									NamedTextColor.RED));
+								addToQueue(player);
+							}
+						}
+					});
+				});
+			} else {
+				if (reserved) {
+					admissions.release(!isAdmin);
+					restoreQueuePosition(player.getUniqueId());
+				}
+
+				// Server doesn't exist, add to queue
+				if (!isAdmin && !forceBypass) {
+					addToQueue(player);
+				}
+			}
+		}
+
+		void onMainServerSlotFreed() {
+			if (queueIndex.size() > 0 && occupancy.get(settings.mainServerName) < mainServerCapacity()) {
+				slotIdle.slotFreed(clock.millis());
+			}
+
+			requestAdmission();
+		}
+
+		// Schedules an admission pass soon, coalescing requests that arrive before it runs
+		void requestAdmission() {
+			requestAdmission(settings.admissionDebounceMillis);
+		}
+
+		private void requestAdmission(long delayMillis) {
+			if (admissionPending) return;
+
+			admissionPending = true;
+			server.getScheduler()
+				.buildTask(Queue.this, () -> engine.execute(() -> {
+					admissionPending = false;
+					processQueue();
+				}))
+				.delay(delayMillis, TimeUnit.MILLISECONDS)
+				.schedule();
+		}
+
+		// Applies the configured admission rate (or the drain rate while draining) and connect window, both slowed
+		// down while the main server's ping latency is high
+		void applyAdmissionPace() {
+			double factor = health.admissionFactor();
+			admissions.setConnectWindow(Math.max(1, (int) Math.round(settings.maxConcurrentConnects * factor)));
+
+			if (drainRate > 0) {
+				// At most a second's worth at once, so a drain ramps up smoothly
+				rateLimiter.configure(drainRate * factor, Math.min(settings.admissionBurst, (int) Math.ceil(drainRate)), clock.millis());
+			} else {
+				rateLimiter.configure(settings.admissionRate * factor, settings.admissionBurst, clock.millis());
+			}
+		}
+
+		// The main server's player limit, from its ping or its configured maximum
+		int mainServerCapacity() {
+			return settings.capacity(health.reportedMaxPlayers());
+		}
+
+		private void processQueue() {
+			long start = System.nanoTime();
+			admitFromQueueHead();
+			metrics.processQueueNanos.record(System.nanoTime() - start);
+		}
+
+		private void admitFromQueueHead() {
+			// Don't process if queue is paused, main server is offline, or a failure is waiting to be confirmed
+			if (queuePaused || !mainServerOnline || !health.admitting()) {
+				return;
+			}
+
+			Optional<RegisteredServer> mainServer = server.getServer(settings.mainServerName);
+
+			if (!mainServer.isPresent()) return;
+
+			while (true) {
+				int next = queueIndex.peek();
+
+				if (next == QueueEntryTable.NONE) {
+					slotIdle.queueEmptied();
+					break;
+				}
+
+				UUID nextPlayerId = queueEntries.playerId(next);
+				Optional<Player> nextPlayer = server.getPlayer(nextPlayerId);
+
+				if (nextPlayer.isPresent()) {
+					PermissionProfiles.Profile profile = profiles.get(nextPlayer.get());
+					boolean isAdmin = profile.isAdmin();
+					boolean isBypass = profile.isBypass();
+
+					// Out of admissions for now under the rate limit; come back when the next one is available
+					if (!rateLimiter.tryAcquire(clock.millis())) {
+						requestAdmission(Math.max(1, rateLimiter.millisUntilAvailable(clock.millis())));
+						break;
+					}
+
+					// Stop once the server is full counting connects still in flight, or the connect window is used up
+					if (!admissions.tryReserve(occupancy.get(settings.mainServerName), mainServerCapacity(), !isAdmin)) {
+						rateLimiter.refund();
+						break;
+					}
+
+					// Take the head out of the ordering while its connection is in flight
+					if (!queueIndex.remove(next)) {
+						admissions.release(!isAdmin);
+						rateLimiter.refund();
+						continue;
+					}
+
+					if (!isAdmin) {
+						slotIdle.slotFilled(clock.millis());
+					}
+
+					connectToMainServer(
+						nextPlayer.get(),
+						false, // not a priority pull
+						isAdmin, // true only for real admins
+						isBypass, // true only for queue.bypass holders
+						true
+					);
+				} else {
+					// Player disconnected, remove from tracking
+					parkFromQueue(nextPlayerId);
+				}
+			}
+		}
+
+		private void accumulatePoints() {
+			// Only entries that crossed a point boundary since the last tick are touched
+			long start = System.nanoTime();
+			pointTimer.advance(clock.millis());
+			metrics.accumulatePointsNanos.record(System.nanoTime() - start);
+		}
+
+		private void onPointBoundary(int slot) {
+			// Ignore entries that left the queue while their timer was firing
+			if (!queueEntries.isUsed(slot)) return;
+
+			int points = queueEntries.pointsAt(slot, clock.millis());
+			queueIndex.reposition(slot, points);
+			pointTimer.schedule(slot, queueEntries.boundaryAfter(slot, points));
+		}
+
+		private void scheduleHealthCheck(long delayMillis) {
+			int generation = ++healthCheckGeneration;
+
+			healthCheckTask = server.getScheduler()
+				.buildTask(Queue.this, () -> engine.execute(() -> {
+					if (generation == healthCheckGeneration) {
+						checkMainServerStatus();
+					}
+				}))
+				.delay(delayMillis, TimeUnit.MILLISECONDS)
+				.schedule();
+		}
+
+		// Pings the main server now instead of at the next scheduled check, unless a ping is already out
+		private void checkMainServerStatusNow() {
+			if (healthCheckInFlight) return;
+
+			healthCheckGeneration++;
+
+			if (healthCheckTask != null) {
+				healthCheckTask.cancel();
+			}
+
+			checkMainServerStatus();
+		}
+
+		private void checkMainServerStatus() {
+			Optional<RegisteredServer> mainServer = server.getServer(settings.mainServerName);
+
+			if (!mainServer.isPresent()) {
+				if (health.unavailable()) {
+					markMainServerOffline("Main server " + settings.mainServerName + " is not registered!");
+				}
+
+				scheduleHealthCheck(health.nextCheckMillis());
+				return;
+			}
+
+			// Timed from the ping until its result has been applied on the engine
+			long start = System.nanoTime();
+			long sent = clock.millis();
+			CompletableFuture<ServerPing> ping = mainServer.get().ping();
+
+			// A ping that never answers counts as a failure instead of stalling the checks
+			ScheduledTask timeout = server.getScheduler()
+				.buildTask(Queue.this, () -> ping.completeExceptionally(new TimeoutException("Main server ping timed out")))
+				.delay(settings.healthCheckTimeoutMillis, TimeUnit.MILLISECONDS)
+				.schedule();
+
+			healthCheckInFlight = true;
+
+			// The ping completes off the engine; only its result is applied there
+			ping.whenComplete((result, throwable) -> {
+				timeout.cancel();
+				long rttMillis = clock.millis() - sent;
+
+				engine.execute(() -> {
+					healthCheckInFlight = false;
+					boolean wasAdmitting = health.admitting();
+
+					if (throwable == null) {
+						int maxPlayers = result.getPlayers().map(ServerPing.Players::getMax).orElse(-1);
+
+						if (health.succeeded(rttMillis, maxPlayers)) {
+							markMainServerOnline();
+						}
+					} else if (health.failed()) {
+						markMainServerOffline("Main server " + settings.mainServerName + " appears to be offline!");
+					}
+
+					// Latency changes how fast the queue may admit
+					applyAdmissionPace();
+
+					// Admissions held back by a failure the server has now answered through can go ahead
+					if (!wasAdmitting && health.admitting()) {
+						requestAdmission();
+					}
+
+					scheduleHealthCheck(health.nextCheckMillis());
+					metrics.checkMainServerNanos.record(System.nanoTime() - start);
+				});
+			});
+		}
+
+		private void markMainServerOnline() {
 			if (!mainServerOnline) {
 				mainServerOnline = true;
-				logger.info("Main server is back online!");
-				notifyQueuePlayers(Component.text(
+				logger.info("Main server " + settings.mainServerName + " is back online!");
+				notifyQueuePlayers("main-server", Component.text(
 					"The main server is back online. Queue processing resumed.",
 					NamedTextColor.GREEN));
+				requestAdmission();
 			}
-		}).exceptionally(throwable -> {
+		}
+
+		private void markMainServerOffline(String reason) {
 			if (mainServerOnline) {
 				mainServerOnline = false;
-				logger.warn("Main server appears to be offline!");
-				notifyQueuePlayers(Component.text(
+				logger.warn(reason);
+				notifyQueuePlayers("main-server", Component.text(
 					"The main server is offline. Queue processing paused.",
 					NamedTextColor.RED));
 			}
+		}
 
-			return null;
-		});
-	}
+		// Notices of the same topic raised in quick succession are coalesced, and the sends happen off the engine.
+		// They go out on every queue server, only to players who queue for this target, as targets may share them
+		void notifyQueuePlayers(String topic, Component message) {
+			if (!broadcaster.offer(topic, message)) return;
 
-	private void notifyQueuePlayers(Component message) {
-		Optional<RegisteredServer> queueServer = server.getServer(queueServerName);
+			server.getScheduler()
+				.buildTask(Queue.this, () -> engine.execute(() -> {
+					List<Player> audience = new ArrayList<>();
 
-		if (queueServer.isPresent()) {
-			queueServer.get().getPlayersConnected().forEach(player -> {
-				player.sendMessage(message);
-			});
+					for (String queueServerName: settings.queueServerNames) {
+						Optional<RegisteredServer> queueServer = server.getServer(queueServerName);
+
+						if (!queueServer.isPresent()) continue;
+
+						for (Player player: queueServer.get().getPlayersConnected()) {
+							if (routes.get(player.getUniqueId()) == this) {
+								audience.add(player);
+							}
+						}
+					}
+
+					broadcaster.flush(topic, audience);
+				}))
+				.delay(QueueBroadcaster.COALESCE_MILLIS, TimeUnit.MILLISECONDS)
+				.schedule();
 		}
-	}
 
-	private void updateQueuePositions() {
-		// Create a snapshot to avoid concurrent modification
-		List<QueueEntry> snapshot = new ArrayList<>(queueEntries.values());
+		// The queue server to send the player to, other than the one given (which may be null), or null if none is
+		// up and registered. Players placed this way are settled once their connect completes
+		private RegisteredServer placeOnQueueServer(UUID playerId, String except) {
+			String queueServerName = queueServers.place(playerId, occupancy::get,
+				name -> !name.equals(except) && server.getServer(name).isPresent());
 
-		List<UUID> sortedQueue = snapshot.stream()
-			.sorted((e1, e2) -> {
-				int pointCompare = Integer.compare(e2.points, e1.points);
+			return queueServerName == null ? null : server.getServer(queueServerName).orElse(null);
+		}
 
-				if (pointCompare != 0) return pointCompare;
-				return Integer.compare(e1.secondsPerPoint, e2.secondsPerPoint);
-			})
-			.map(e -> e.playerId)
-			.toList();
+		// Another queue server for a queued player kicked off one of them, or null to let the kick go ahead
+		RegisteredServer replaceQueueServer(UUID playerId, String kickedFrom) {
+			if (!queueEntries.containsKey(playerId)) return null;
 
-		int position = 1;
+			return placeOnQueueServer(playerId, kickedFrom);
+		}
 
-		for (UUID playerId: sortedQueue) {
-			Optional<Player> player = server.getPlayer(playerId);
+		private void scheduleQueueServerCheck() {
+			server.getScheduler()
+				.buildTask(Queue.this, () -> engine.execute(this::checkQueueServers))
+				.delay(settings.healthCheckIntervalMillis, TimeUnit.MILLISECONDS)
+				.schedule();
+		}
 
-			if (player.isPresent()) {
-				QueueEntry entry = queueEntries.get(playerId);
+		// Pings every queue server while there is more than one, so queued players can be moved off one that stops
+		// answering; a single queue server has nowhere to move them to
+		private void checkQueueServers() {
+			if (queueServers.size() < 2) {
+				scheduleQueueServerCheck();
+				return;
+			}
 
-				if (entry != null) {
-					String statusText = "Queue #" + position + " | Points: " + entry.points;
+			List<CompletableFuture<Void>> pings = new ArrayList<>();
 
-					if (queuePaused) {
-						statusText += " (PAUSED)";
-					}
+			for (String name: queueServers.names()) {
+				Optional<RegisteredServer> queueServer = server.getServer(name);
 
-					if (!mainServerOnline) {
-						statusText += " (OFFLINE)";
-					}
+				if (!queueServer.isPresent()) {
+					onQueueServerChecked(name, false);
+					continue;
+				}
+
+				CompletableFuture<ServerPing> ping = queueServer.get().ping();
+				ScheduledTask timeout = server.getScheduler()
+					.buildTask(Queue.this, () -> ping.completeExceptionally(new TimeoutException("Queue server ping timed out")))
+					.delay(settings.healthCheckTimeoutMillis, TimeUnit.MILLISECONDS)
+					.schedule();
+
+				pings.add(ping.handle((result, throwable) -> {
+					timeout.cancel();
+					engine.execute(() -> onQueueServerChecked(name, throwable == null));
+					return null;
+				}));
+			}
+
+			// The next round starts an interval after the slowest answer
+			CompletableFuture.allOf(pings.toArray(new CompletableFuture<?>[0])).whenComplete((done, throwable) -> scheduleQueueServerCheck());
+		}
 
-					player.get().sendActionBar(Component.text(statusText, NamedTextColor.GOLD));
+		private void onQueueServerChecked(String name, boolean answered) {
+			if (answered) {
+				if (queueServers.succeeded(name)) {
+					logger.info("Queue server " + name + " of target " + this.name + " is back up");
 				}
+			} else if (queueServers.failed(name)) {
+				logger.warn("Queue server " + name + " of target " + this.name + " is down, moving its queued players to the other queue servers");
+				rebalanceQueueServer(name);
+			}
+		}
+
+		// Sends this target's queued players still on a queue server that went down to the others. Players the
+		// server drops before then are redirected as they are kicked, by onKickedFromServer()
+		private void rebalanceQueueServer(String down) {
+			Optional<RegisteredServer> downServer = server.getServer(down);
+
+			if (!downServer.isPresent()) return;
+
+			int moved = 0;
+
+			for (Player player: downServer.get().getPlayersConnected()) {
+				UUID playerId = player.getUniqueId();
+
+				if (routes.get(playerId) != this || !queueEntries.containsKey(playerId)) continue;
+
+				RegisteredServer queueServer = placeOnQueueServer(playerId, down);
+
+				// No queue server left to move to
+				if (queueServer == null) break;
+
+				player.sendMessage(Component.text("Your queue server is down, moving you to another one. Your place in the queue is kept.", NamedTextColor.YELLOW));
+				player.createConnectionRequest(queueServer).connect().whenComplete((result, throwable) ->
+					engine.execute(() -> queueServers.settled(playerId)));
+				moved++;
 			}
 
-			position++;
+			if (moved > 0) {
+				logger.info("Moved " + moved + " players queued for " + name + " off queue server " + down);
+			}
 		}
-	}
 
-	private int getQueuePosition(UUID playerId) {
-		// Create a snapshot to avoid concurrent modification
-		List<QueueEntry> snapshot = new ArrayList<>(queueEntries.values());
+		private void schedulePositionDisplay() {
+			if (positionDisplayTask != null) {
+				positionDisplayTask.cancel();
+			}
 
-		List<UUID> sortedQueue = snapshot.stream()
-			.sorted((e1, e2) -> {
-				int pointCompare = Integer.compare(e2.points, e1.points);
+			positionDisplay.setRefreshMillis(settings.actionBarRefreshMillis);
+			positionDisplayTask = server.getScheduler()
+				.buildTask(Queue.this, () -> engine.execute(this::updateQueuePositions))
+				.repeat(settings.actionBarIntervalMillis, TimeUnit.MILLISECONDS)
+				.schedule();
+		}
 
-				if (pointCompare != 0) return pointCompare;
-				return Integer.compare(e1.secondsPerPoint, e2.secondsPerPoint);
-			})
-			.map(e -> e.playerId)
-			.toList();
+		private void updateQueuePositions() {
+			int flags = 0;
 
-		int index = sortedQueue.indexOf(playerId);
-		return index == -1 ? -1 : index + 1;
-	}
+			if (queuePaused) {
+				flags |= PositionDisplay.PAUSED;
+			}
+
+			if (!mainServerOnline) {
+				flags |= PositionDisplay.OFFLINE;
+			}
+
+			// Only players whose position, points or status text changed are sent a packet
+			positionDisplay.flush(clock.millis(), flags);
+		}
 
-	private void loadServerConfig() {
-		File configFile = new File(dataDirectory.toFile(), "server-config.yml");
+		int getQueuePosition(UUID playerId) {
+			int slot = queueEntries.slot(playerId);
 
-		try {
-			YamlConfigurationLoader loader = YamlConfigurationLoader.builder()
-				.file(configFile)
-				.build();
+			if (slot == QueueEntryTable.NONE) return -1;
 
-			CommentedConfigurationNode root;
+			// Entries outside the index are at the head of the queue being connected
+			int rank = queueIndex.rank(slot);
+			return rank == -1 ? 1 : rank;
+		}
 
-			if (!configFile.exists()) {
-				// Create default configuration
-				root = loader.createNode();
-				root.node("main-server").set("main").comment("The name of the main server in your Velocity configuration");
-				root.node("queue-server").set("queue").comment("The name of the queue/lobby server in your Velocity configuration");
-				root.node("main-server-max-players").set(100).comment("Maximum players allowed on the main server (admins can bypass this)");
-				loader.save(root);
-				logger.info("Created default server-config.yml");
-			} else {
-				root = loader.load();
-			}
+		long estimatedWaitSeconds(UUID playerId) {
+			int slot = queueEntries.slot(playerId);
 
-			mainServerName = root.node("main-server").getString("main");
-			queueServerName = root.node("queue-server").getString("queue");
-			mainServerMaxPlayers = root.node("main-server-max-players").getInt(100);
+			if (slot == QueueEntryTable.NONE) return -1;
 
-			logger.info("Loaded server configuration - Main: " + mainServerName + ", Queue: " + queueServerName);
-		} catch (IOException e) {
-			logger.error("Failed to load server configuration", e);
-			mainServerName = "main";
-			queueServerName = "queue";
-			mainServerMaxPlayers = 100;
+			return waitEstimator.etaSeconds(slot, getQueuePosition(playerId));
 		}
-	}
 
-	private void loadPriorityConfig() {
-		File configFile = new File(dataDirectory.toFile(), "priority-players.yml");
+		// Runs on the engine after every batch of commands
+		private QueueSnapshot publishSnapshot() {
+			return engine.snapshot().next(queueEntries.size(), queuePaused, mainServerOnline);
+		}
 
-		try {
-			YamlConfigurationLoader loader = YamlConfigurationLoader.builder()
-				.file(configFile)
-				.build();
+		void restoreQueueState() {
+			long start = System.nanoTime();
 
-			CommentedConfigurationNode root;
+			List<EntryRecord> restored;
 
-			if (!configFile.exists()) {
-				// Create default configuration
-				root = loader.createNode();
-				root.node("priority-players").setList(String.class, Arrays.asList(
-					"00000000-0000-0000-0000-000000000000"
-				)).comment("List of player UUIDs with priority queue access. Players can also get priority via the queue.priority permission.");
-				loader.save(root);
-				logger.info("Created default priority-players.yml");
-			} else {
-				root = loader.load();
+			try {
+				restored = journal.restore();
+			} catch (IOException e) {
+				logger.error("Failed to restore queue state of target " + name + ", queue progress will not be saved", e);
+				return;
 			}
 
-			priorityPlayers.clear();
-			List<String> uuidStrings = root.node("priority-players").getList(String.class, new ArrayList<>());
+			journal.start();
 
-			for (String uuidString: uuidStrings) {
-				try {
-					priorityPlayers.add(UUID.fromString(uuidString));
-				} catch (IllegalArgumentException e) {
-					logger.warn("Invalid UUID in priority-players.yml: " + uuidString);
+			// Restored players are parked until they reconnect or restore-grace-seconds runs out. The restore set
+			// is sized to hold every one of them, and is parked in join order so it expires oldest first
+			long now = clock.millis();
+			restored.sort(Comparator.comparingLong(entry -> entry.joinTime));
+			restoredCache.configure(TimeUnit.SECONDS.toMillis(config.restoreGraceSeconds), restored.size(), now);
+
+			for (EntryRecord entry: restored) {
+				if (entry.front) {
+					journal.leave(entry.playerId);
+				} else {
+					restoredCache.park(entry.playerId, entry.joinTime, entry.pointsSince, entry.secondsPerPoint, now);
+					routes.putIfAbsent(entry.playerId, this);
 				}
 			}
 
-			logger.info("Loaded " + priorityPlayers.size() + " priority players");
-		} catch (IOException e) {
-			logger.error("Failed to load priority configuration", e);
+			logger.info("Restored " + restoredCache.size() + " of " + restored.size() + " queue entries of target " + name + " in " +
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
 		}
-	}
 
-	private void loadPointConfig() {
-		File configFile = new File(dataDirectory.toFile(), "queue-points.yml");
+		// Swaps in newly loaded settings and applies everything that follows from them
+		void applyConfig(QueueConfig.Target next, QueueConfig global) {
+			QueueConfig.Target previous = settings;
+			settings = next;
+
+			health.configure(next.healthCheckIntervalMillis, next.healthCheckMaxBackoffMillis, next.healthCheckUpThreshold,
+				next.healthCheckDownThreshold, next.healthCheckRttWindow, next.healthCheckRttTargetMillis, next.healthCheckRttLimitMillis);
+			applyAdmissionPace();
+			queueServers.configure(next.queueServerNames, next.hashPlacement, next.healthCheckUpThreshold, next.healthCheckDownThreshold);
+			profiles.setTtlMillis(TimeUnit.SECONDS.toMillis(global.permissionCacheSeconds));
+			// A reload also picks up permission changes made since the profiles were cached
+			profiles.invalidateAll();
+			reconnectCache.configure(TimeUnit.SECONDS.toMillis(global.reconnectGraceSeconds), global.reconnectGraceMaxEntries, clock.millis());
+			// Nothing is added to the restore set after startup, so its current size keeps every entry still in it
+			restoredCache.configure(TimeUnit.SECONDS.toMillis(global.restoreGraceSeconds), restoredCache.size(), clock.millis());
+
+			if (next.tiersChanged(previous)) {
+				profiles.setTiers(next.pointTiers, next.defaultSecondsPerPoint);
+				metrics.setTiers(next.pointTiers, next.defaultSecondsPerPoint);
+				retierQueue();
+			}
 
-		try {
-			YamlConfigurationLoader loader = YamlConfigurationLoader.builder()
-				.file(configFile)
-				.build();
+			if (previous != null && (previous.actionBarIntervalMillis != next.actionBarIntervalMillis ||
+				previous.actionBarRefreshMillis != next.actionBarRefreshMillis)) {
+				schedulePositionDisplay();
+			}
+		}
 
-			CommentedConfigurationNode root;
+		// Moves queued players onto the rate their permissions give under the current tiers, in one pass.
+		// Their points and progress towards the next point are kept, and only entries whose rate actually changed
+		// are moved in the index, so a reload costs O(changed log n) on top of the permission lookups
+		private void retierQueue() {
+			long now = clock.millis();
+			int retiered = 0;
 
-			if (!configFile.exists()) {
-				// Create default configuration with example tiers
-				root = loader.createNode();
+			for (int slot = 0; slot < queueEntries.slots(); slot++) {
+				// Front-of-queue admins aren't on a tier
+				if (!queueEntries.isUsed(slot) || queueEntries.isFront(slot)) continue;
 
-				root.node("tiers", "queue.vip.diamond").set(10).comment("VIP Diamond: 1 point every 10 seconds");
-				root.node("tiers", "queue.vip.gold").set(20).comment("VIP Gold: 1 point every 20 seconds");
-				root.node("tiers", "queue.vip.silver").set(30).comment("VIP Silver: 1 point every 30 seconds");
-				root.node("tiers", "queue.vip").set(45).comment("VIP: 1 point every 45 seconds");
-				root.node("default-seconds").set(60).comment("Default for players without any tier permission");
+				UUID playerId = queueEntries.playerId(slot);
+				Optional<Player> player = server.getPlayer(playerId);
 
-				loader.save(root);
-				logger.info("Created default queue-points.yml");
-			} else {
-				root = loader.load();
-			}
+				if (!player.isPresent()) continue;
 
-			pointTiers.clear();
-			CommentedConfigurationNode tiersNode = root.node("tiers");
+				int secondsPerPoint = getSecondsPerPoint(player.get());
+				int previous = queueEntries.secondsPerPoint(slot);
 
-			if (!tiersNode.virtual()) {
-				for (Map.Entry < Object, ? extends CommentedConfigurationNode > entry : tiersNode.childrenMap().entrySet()) {
-					String permission = entry.getKey().toString();
-					int seconds = entry.getValue().getInt(60);
-					pointTiers.put(permission, seconds);
-				}
+				if (secondsPerPoint == previous) continue;
+
+				long pointsSince = queueEntries.pointsSinceAt(slot, secondsPerPoint, now);
+				metrics.left(false, previous);
+				queueIndex.retier(slot, secondsPerPoint, pointsSince);
+				metrics.joined(false, secondsPerPoint);
+				pointTimer.schedule(slot, queueEntries.boundaryAfter(slot, queueEntries.indexedPoints[slot]));
+				journal.tier(playerId, pointsSince, secondsPerPoint);
+				retiered++;
 			}
 
-			logger.info("Loaded " + pointTiers.size() + " queue point tiers");
-		} catch (IOException e) {
-			logger.error("Failed to load queue points configuration", e);
+			if (retiered > 0) {
+				logger.info("Moved " + retiered + " players queued for " + name + " to their new point tier");
+			}
 		}
 	}
 
-	// Queue entry class to track player queue data
-	private static class QueueEntry {
-		UUID playerId;
-		long joinTime;
-		int points;
-		int secondsPerPoint;
+	public class QueueCommand implements SimpleCommand {
 
-		QueueEntry(UUID playerId, int secondsPerPoint) {
-			this.playerId = playerId;
-			this.joinTime = System.currentTimeMillis();
-			this.points = 0;
-			this.secondsPerPoint = secondsPerPoint;
-		}
-	}
+		private static final int LIST_PAGE_SIZE = 10;
 
-	public class QueueCommand implements SimpleCommand {
+		private static final int MAX_SUGGESTIONS = 50;
+
+		private static final DateTimeFormatter EXPORT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
 
 		@Override
 
@@ -700,6 +1507,14 @@ public class Queue {
 				case "info":
 					handleInfo(source);
 					break;
+				case "join":
+					if (args.length < 2) {
+						source.sendMessage(Component.text("Usage: /queue join <" + String.join("|", targets.keySet()) + ">", NamedTextColor.RED));
+						return;
+					}
+
+					handleJoin(source, args[1]);
+					break;
 				case "pull":
 					if (!source.hasPermission("queue.admin")) {
 						source.sendMessage(Component.text("You don't have permission to use this command!", NamedTextColor.RED));
@@ -719,7 +1534,7 @@ public class Queue {
 						return;
 					}
 
-					handlePause(source);
+					handlePause(source, args.length > 1 ? args[1] : null);
 					break;
 				case "resume":
 					if (!source.hasPermission("queue.admin")) {
@@ -727,10 +1542,23 @@ public class Queue {
 						return;
 					}
 
-					handleResume(source);
+					handleResume(source, args.length > 1 ? args[1] : null);
+					break;
+				case "drain":
+					if (!source.hasPermission("queue.admin")) {
+						source.sendMessage(Component.text("You don't have permission to use this command!", NamedTextColor.RED));
+						return;
+					}
+
+					if (args.length < 2) {
+						source.sendMessage(Component.text("Usage: /queue drain <players per second>|off [target]", NamedTextColor.RED));
+						return;
+					}
+
+					handleDrain(source, args[1], args.length > 2 ? args[2] : null);
 					break;
 				case "status":
-					handleStatus(source);
+					handleStatus(source, args.length > 1 ? args[1] : null);
 					break;
 				case "credits":
 					handleCredits(source);
@@ -749,7 +1577,23 @@ public class Queue {
 						return;
 					}
 
-					handleList(source);
+					handleList(source, args);
+					break;
+				case "export":
+					if (!source.hasPermission("queue.admin")) {
+						source.sendMessage(Component.text("You don't have permission to use this command!", NamedTextColor.RED));
+						return;
+					}
+
+					handleExport(source, args.length > 1 ? args[1] : null);
+					break;
+				case "convert-priority":
+					if (!source.hasPermission("queue.admin")) {
+						source.sendMessage(Component.text("You don't have permission to use this command!", NamedTextColor.RED));
+						return;
+					}
+
+					handleConvertPriority(source);
 					break;
 				default:
 					sendHelp(source);
@@ -759,51 +1603,156 @@ public class Queue {
 
 		@Override
 
+		public CompletableFuture<List<String>> suggestAsync(Invocation invocation) {
+			String[] args = invocation.arguments();
+
+			// Only queued players can be pulled; their names are indexed on each target's engine, so complete there
+			if (args.length == 2 && args[0].equalsIgnoreCase("pull") && invocation.source().hasPermission("queue.admin")) {
+				String prefix = args[1];
+				List<CompletableFuture<List<String>>> completions = new ArrayList<>();
+
+				for (QueueTarget target: targets.values()) {
+					completions.add(target.engine.submit(() -> target.queuedNames.complete(prefix, MAX_SUGGESTIONS)));
+				}
+
+				return CompletableFuture.allOf(completions.toArray(new CompletableFuture<?>[0])).thenApply(done -> completions.stream()
+					.flatMap(completion -> completion.join().stream())
+					.sorted(String.CASE_INSENSITIVE_ORDER)
+					.limit(MAX_SUGGESTIONS)
+					.toList());
+			}
+
+			return CompletableFuture.completedFuture(suggest(invocation));
+		}
+
+		@Override
+
 		public List<String> suggest(Invocation invocation) {
 			String[] args = invocation.arguments();
+			boolean admin = invocation.source().hasPermission("queue.admin");
 
 			if (args.length == 0 || args.length == 1) {
 				List<String> suggestions = new ArrayList<>();
 				suggestions.add("info");
+				suggestions.add("join");
 				suggestions.add("status");
 				suggestions.add("credits");
 
-				if (invocation.source().hasPermission("queue.admin")) {
+				if (admin) {
 					suggestions.add("pull");
 					suggestions.add("pause");
 					suggestions.add("resume");
+					suggestions.add("drain");
 					suggestions.add("reload");
 					suggestions.add("list");
+					suggestions.add("export");
+					suggestions.add("convert-priority");
 				}
 
 				return suggestions;
 			}
 
-			if (args.length == 2 && args[0].equalsIgnoreCase("pull")) {
-				return server.getAllPlayers().stream()
-					.map(Player::getUsername)
-					.filter(name -> name.toLowerCase().startsWith(args[1].toLowerCase()))
-					.toList();
+			String command = args[0].toLowerCase();
+			String prefix = args[args.length - 1].toLowerCase();
+			List<String> suggestions = new ArrayList<>();
+
+			switch (command) {
+				case "join":
+				case "status":
+					if (args.length == 2) {
+						suggestions.addAll(targets.keySet());
+					}
+
+					break;
+				case "pause":
+				case "resume":
+				case "export":
+					if (args.length == 2 && admin) {
+						suggestions.addAll(targets.keySet());
+					}
+
+					break;
+				case "drain":
+					if (args.length == 2) {
+						suggestions.add("off");
+					} else if (args.length == 3 && admin) {
+						suggestions.addAll(targets.keySet());
+					}
+
+					break;
+				case "list":
+					if (!admin) break;
+
+					// /queue list [target] [page] [tier|name]: offer targets first, then tier names after the optional page
+					QueueTarget target = args.length > 2 ? findTarget(args[1]) : null;
+					int first = target == null ? 1 : 2;
+					int position = args.length - first;
+
+					if (target == null) {
+						target = defaultTarget();
+
+						if (position == 1) {
+							suggestions.addAll(targets.keySet());
+						}
+					}
+
+					if ((position == 1 || position == 2) && (position == 2 || prefix.isEmpty() || !Character.isDigit(prefix.charAt(0)))) {
+						suggestions.add("front");
+						suggestions.addAll(target.settings.tierFilters.keySet());
+					}
+
+					break;
+				default:
+					break;
 			}
 
-			return Collections.emptyList();
+			return suggestions.stream()
+				.filter(name -> name.toLowerCase().startsWith(prefix))
+				.distinct()
+				.sorted()
+				.toList();
 		}
 
 		private void sendHelp(CommandSource source) {
 			source.sendMessage(Component.text("=== Queue System Help ===", NamedTextColor.GOLD));
 			source.sendMessage(Component.text("/queue info - View your queue position", NamedTextColor.YELLOW));
-			source.sendMessage(Component.text("/queue status - View queue system status", NamedTextColor.YELLOW));
+			source.sendMessage(Component.text("/queue join <target> - Queue for another server: " + String.join(", ", targets.keySet()), NamedTextColor.YELLOW));
+			source.sendMessage(Component.text("/queue status [target] - View queue system status", NamedTextColor.YELLOW));
 			source.sendMessage(Component.text("/queue credits - View plugin credits", NamedTextColor.YELLOW));
 
 			if (source.hasPermission("queue.admin")) {
 				source.sendMessage(Component.text("/queue pull<player> - Pull a player from queue to main server", NamedTextColor.YELLOW));
-				source.sendMessage(Component.text("/queue pause - Pause the queue from processing", NamedTextColor.YELLOW));
-				source.sendMessage(Component.text("/queue resume - Resume the queue processing", NamedTextColor.YELLOW));
-				source.sendMessage(Component.text("/queue list - List all players in queue", NamedTextColor.YELLOW));
+				source.sendMessage(Component.text("/queue pause [target] - Pause the queue from processing", NamedTextColor.YELLOW));
+				source.sendMessage(Component.text("/queue resume [target] - Resume the queue processing", NamedTextColor.YELLOW));
+				source.sendMessage(Component.text("/queue drain <rate>|off [target] - Limit admissions to a rate per second, e.g. after maintenance", NamedTextColor.YELLOW));
+				source.sendMessage(Component.text("/queue list [target] [page] [tier|name] - List players in queue, a page at a time", NamedTextColor.YELLOW));
+				source.sendMessage(Component.text("/queue export [target] - Write the whole queue to a file in the plugin folder", NamedTextColor.YELLOW));
+				source.sendMessage(Component.text("/queue convert-priority - Move the priority-players.yml list into priority-players.bin", NamedTextColor.YELLOW));
 				source.sendMessage(Component.text("/queue reload - Reload configuration files", NamedTextColor.YELLOW));
 			}
 		}
 
+		// The named target, or every target when name is null; null after telling the source if there is no such target
+		private Collection<QueueTarget> selectTargets(CommandSource source, String name) {
+			if (name == null) {
+				return targets.values();
+			}
+
+			QueueTarget target = findTarget(name);
+
+			if (target == null) {
+				source.sendMessage(Component.text("Unknown queue target '" + name + "'. Targets: " + String.join(", ", targets.keySet()), NamedTextColor.RED));
+				return null;
+			}
+
+			return List.of(target);
+		}
+
+		// "Queue" on a single target setup, so messages read as they always have
+		private String queueName(QueueTarget target) {
+			return targets.size() == 1 ? "Queue" : "Queue " + target.name;
+		}
+
 		private void handleInfo(CommandSource source) {
 			if (!(source instanceof Player)) {
 				source.sendMessage(Component.text("This command can only be used by players!", NamedTextColor.RED));
@@ -811,29 +1760,89 @@ public class Queue {
 			}
 
 			Player player = (Player) source;
+			QueueTarget target = routes.get(player.getUniqueId());
+
+			if (target == null) {
+				source.sendMessage(Component.text("You are not in the queue.", NamedTextColor.GREEN));
+				return;
+			}
 
-			if (player.hasPermission("queue.admin")) {
+			if (target.profiles.get(player).isAdmin()) {
 				source.sendMessage(Component.text("You have admin access!", NamedTextColor.GOLD));
 				return;
 			}
 
-			int position = getQueuePosition(player.getUniqueId());
+			target.engine.execute(() -> {
+				int position = target.getQueuePosition(player.getUniqueId());
 
-			if (position == -1) {
-				source.sendMessage(Component.text("You are not in the queue.", NamedTextColor.GREEN));
-			} else {
-				QueueEntry entry = queueEntries.get(player.getUniqueId());
-				source.sendMessage(Component.text("Your queue position: " + position + "/" + queueEntries.size(), NamedTextColor.YELLOW));
-				source.sendMessage(Component.text("Your points: " + entry.points + " (1 point per " + entry.secondsPerPoint + "s)", NamedTextColor.YELLOW));
+				if (position == -1) {
+					source.sendMessage(Component.text("You are not in the queue.", NamedTextColor.GREEN));
+				} else {
+					QueueEntryTable entries = target.queueEntries;
+					int slot = entries.slot(player.getUniqueId());
 
-				if (queuePaused) {
-					source.sendMessage(Component.text("Queue is currently PAUSED", NamedTextColor.RED));
-				}
+					if (targets.size() > 1) {
+						source.sendMessage(Component.text("Queued for: " + target.name, NamedTextColor.YELLOW));
+					}
 
-				if (!mainServerOnline) {
-					source.sendMessage(Component.text("Main server is currently OFFLINE", NamedTextColor.RED));
+					source.sendMessage(Component.text("Your queue position: " + position + "/" + target.queueEntries.size(), NamedTextColor.YELLOW));
+					source.sendMessage(Component.text("Your points: " + entries.pointsAt(slot, clock.millis()) + " (1 point per " + entries.secondsPerPoint(slot) + "s)", NamedTextColor.YELLOW));
+
+					if (!target.queuePaused && target.mainServerOnline) {
+						source.sendMessage(Component.text("Estimated wait: " + target.estimatedWait(slot, position), NamedTextColor.YELLOW));
+					}
+
+					if (target.queuePaused) {
+						source.sendMessage(Component.text("Queue is currently PAUSED", NamedTextColor.RED));
+					}
+
+					if (!target.mainServerOnline) {
+						source.sendMessage(Component.text("Main server is currently OFFLINE", NamedTextColor.RED));
+					}
 				}
+			});
+		}
+
+		private void handleJoin(CommandSource source, String targetName) {
+			if (!(source instanceof Player)) {
+				source.sendMessage(Component.text("This command can only be used by players!", NamedTextColor.RED));
+				return;
 			}
+
+			Collection<QueueTarget> selected = selectTargets(source, targetName);
+
+			if (selected == null) return;
+
+			Player player = (Player) source;
+			UUID playerId = player.getUniqueId();
+			QueueTarget target = selected.iterator().next();
+			QueueTarget current = routes.get(playerId);
+			boolean onMainServer = player.getCurrentServer()
+				.map(s -> s.getServerInfo().getName().equals(target.settings.mainServerName))
+				.orElse(false);
+
+			if (onMainServer) {
+				source.sendMessage(Component.text("You are already on " + target.name + "!", NamedTextColor.YELLOW));
+				return;
+			}
+
+			PermissionProfiles.Profile profile = target.profiles.get(player);
+
+			// Leave the old queue on its engine first, so the player is never queued for two targets at once
+			CompletableFuture<Boolean> left = current == null || current == target ? CompletableFuture.completedFuture(false) :
+				current.engine.submit(() -> current.leaveQueue(playerId));
+
+			left.thenAccept(wasQueued -> {
+				routes.put(playerId, target);
+
+				target.engine.execute(() -> {
+					if (wasQueued) {
+						player.sendMessage(Component.text("You left the queue for " + current.name + ".", NamedTextColor.YELLOW));
+					}
+
+					target.route(player, profile);
+				});
+			});
 		}
 
 		private void handlePull(CommandSource source, String playerName) {
@@ -846,55 +1855,175 @@ public class Queue {
 
 			Player player = targetPlayer.get();
 			UUID playerId = player.getUniqueId();
+			QueueTarget target = routes.get(playerId);
 
-			if (!playersInQueue.contains(playerId)) {
+			if (target == null) {
 				source.sendMessage(Component.text("This player is not in the queue!", NamedTextColor.RED));
 				return;
 			}
 
-			queueEntries.remove(playerId);
-			playersInQueue.remove(playerId);
+			target.engine.execute(() -> {
+				if (!target.queueEntries.containsKey(playerId)) {
+					source.sendMessage(Component.text("This player is not in the queue!", NamedTextColor.RED));
+					return;
+				}
+
+				target.admitFromQueue(playerId);
 
-			// Use forceBypass=true to bypass max player check
-			connectToMainServer(player, false, false, true);
-			source.sendMessage(Component.text("Pulled " + player.getUsername() + " from the queue!", NamedTextColor.GREEN));
+				// Use forceBypass=true to bypass max player check
+				target.connectToMainServer(player, false, false, true);
+				source.sendMessage(Component.text("Pulled " + player.getUsername() + " from the queue!", NamedTextColor.GREEN));
+			});
 		}
 
-		private void handlePause(CommandSource source) {
-			if (queuePaused) {
-				source.sendMessage(Component.text("Queue is already paused!", NamedTextColor.YELLOW));
-				return;
+		private void handlePause(CommandSource source, String targetName) {
+			Collection<QueueTarget> selected = selectTargets(source, targetName);
+
+			if (selected == null) return;
+
+			for (QueueTarget target: selected) {
+				target.engine.execute(() -> {
+					if (target.queuePaused) {
+						source.sendMessage(Component.text(queueName(target) + " is already paused!", NamedTextColor.YELLOW));
+						return;
+					}
+
+					target.queuePaused = true;
+					source.sendMessage(Component.text(queueName(target) + " has been paused!", NamedTextColor.GREEN));
+					target.notifyQueuePlayers("paused", Component.text("The queue has been paused by an administrator.", NamedTextColor.YELLOW));
+					logger.info(queueName(target) + " paused by " + (source instanceof Player ? ((Player) source).getUsername() : "Console"));
+				});
 			}
+		}
+
+		private void handleResume(CommandSource source, String targetName) {
+			Collection<QueueTarget> selected = selectTargets(source, targetName);
+
+			if (selected == null) return;
 
-			queuePaused = true;
-			source.sendMessage(Component.text("Queue has been paused!", NamedTextColor.GREEN));
-			notifyQueuePlayers(Component.text("The queue has been paused by an administrator.", NamedTextColor.YELLOW));
-			logger.info("Queue paused by " + (source instanceof Player ? ((Player) source).getUsername() : "Console"));
+			for (QueueTarget target: selected) {
+				target.engine.execute(() -> {
+					if (!target.queuePaused) {
+						source.sendMessage(Component.text(queueName(target) + " is not paused!", NamedTextColor.YELLOW));
+						return;
+					}
+
+					target.queuePaused = false;
+					source.sendMessage(Component.text(queueName(target) + " has been resumed!", NamedTextColor.GREEN));
+					target.notifyQueuePlayers("paused", Component.text("The queue has been resumed!", NamedTextColor.GREEN));
+					logger.info(queueName(target) + " resumed by " + (source instanceof Player ? ((Player) source).getUsername() : "Console"));
+				});
+			}
 		}
 
-		private void handleResume(CommandSource source) {
-			if (!queuePaused) {
-				source.sendMessage(Component.text("Queue is not paused!", NamedTextColor.YELLOW));
-				return;
+		private void handleDrain(CommandSource source, String argument, String targetName) {
+			double rate = 0;
+
+			if (!argument.equalsIgnoreCase("off")) {
+				try {
+					rate = Double.parseDouble(argument);
+				} catch (NumberFormatException e) {
+					rate = -1;
+				}
+
+				if (!(rate > 0) || Double.isInfinite(rate)) {
+					source.sendMessage(Component.text("The drain rate must be a positive number of players per second, or off.", NamedTextColor.RED));
+					return;
+				}
 			}
 
-			queuePaused = false;
-			source.sendMessage(Component.text("Queue has been resumed!", NamedTextColor.GREEN));
-			notifyQueuePlayers(Component.text("The queue has been resumed!", NamedTextColor.GREEN));
-			logger.info("Queue resumed by " + (source instanceof Player ? ((Player) source).getUsername() : "Console"));
+			Collection<QueueTarget> selected = selectTargets(source, targetName);
+
+			if (selected == null) return;
+
+			double newRate = rate;
+			String by = source instanceof Player ? ((Player) source).getUsername() : "Console";
+
+			for (QueueTarget target: selected) {
+				target.engine.execute(() -> {
+					if (newRate == 0) {
+						if (target.drainRate == 0) {
+							source.sendMessage(Component.text(queueName(target) + " is not draining!", NamedTextColor.YELLOW));
+							return;
+						}
+
+						target.drainRate = 0;
+						target.applyAdmissionPace();
+						source.sendMessage(Component.text(queueName(target) + " drain stopped, admissions are back to the configured rate.", NamedTextColor.GREEN));
+						logger.info(queueName(target) + " drain stopped by " + by);
+					} else {
+						target.drainRate = newRate;
+						target.applyAdmissionPace();
+						source.sendMessage(Component.text(queueName(target) + " is draining at " + newRate + " players per second.", NamedTextColor.GREEN));
+						logger.info(queueName(target) + " draining at " + newRate + " players per second, set by " + by);
+					}
+
+					target.requestAdmission();
+				});
+			}
 		}
 
-		private void handleStatus(CommandSource source) {
+		private void handleStatus(CommandSource source, String targetName) {
+			Collection<QueueTarget> selected = selectTargets(source, targetName);
+
+			if (selected == null) return;
+
 			source.sendMessage(Component.text("=== Queue System Status ===", NamedTextColor.GOLD));
-			source.sendMessage(Component.text("Players in queue: " + queueEntries.size(), NamedTextColor.YELLOW));
-			source.sendMessage(Component.text("Queue paused: " + (queuePaused ? "YES" : "NO"), queuePaused ? NamedTextColor.RED : NamedTextColor.GREEN));
-			source.sendMessage(Component.text("Main server online: " + (mainServerOnline ? "YES" : "NO"), mainServerOnline ? NamedTextColor.GREEN : NamedTextColor.RED));
 
-			Optional<RegisteredServer> mainServer = server.getServer(mainServerName);
+			for (QueueTarget target: selected) {
+				QueueConfig.Target settings = target.settings;
 
-			if (mainServer.isPresent()) {
-				int current = mainServer.get().getPlayersConnected().size();
-				source.sendMessage(Component.text("Main server players: " + current + "/" + mainServerMaxPlayers, NamedTextColor.YELLOW));
+				if (targets.size() > 1) {
+					source.sendMessage(Component.text("--- " + target.name + " (" + String.join(", ", settings.queueServerNames) + " -> " + settings.mainServerName + ") ---", NamedTextColor.GOLD));
+				}
+
+				// Read from the published snapshot, without waiting on the engine
+				QueueSnapshot snapshot = target.engine.snapshot();
+				source.sendMessage(Component.text("Players in queue: " + snapshot.size, NamedTextColor.YELLOW));
+				source.sendMessage(Component.text("Queue paused: " + (snapshot.paused ? "YES" : "NO"), snapshot.paused ? NamedTextColor.RED : NamedTextColor.GREEN));
+				source.sendMessage(Component.text("Main server online: " + (snapshot.mainServerOnline ? "YES" : "NO"), snapshot.mainServerOnline ? NamedTextColor.GREEN : NamedTextColor.RED));
+
+				if (target.drainRate > 0) {
+					source.sendMessage(Component.text("Admission rate: draining at " + target.drainRate + "/s", NamedTextColor.YELLOW));
+				} else if (settings.admissionRate > 0) {
+					source.sendMessage(Component.text("Admission rate: " + settings.admissionRate + "/s (burst " + settings.admissionBurst + ")", NamedTextColor.YELLOW));
+				}
+
+				Optional<RegisteredServer> mainServer = server.getServer(settings.mainServerName);
+
+				if (mainServer.isPresent()) {
+					int current = occupancy.get(settings.mainServerName);
+					source.sendMessage(Component.text("Main server players: " + current + "/" + target.mainServerCapacity(), NamedTextColor.YELLOW));
+					source.sendMessage(Component.text("Connections in flight: " + target.admissions.inFlight() + " (" +
+						target.admissions.reservedSlots() + " reserved slots)", NamedTextColor.YELLOW));
+					source.sendMessage(Component.text("Admissions: " + target.metrics.getAdmissions() + String.format(" (%.2f/s over the last minute)",
+						target.metrics.getAdmissionsPerSecond()), NamedTextColor.YELLOW));
+					source.sendMessage(Component.text("Slot idle time: avg " + target.slotIdle.averageIdleMillis() + "ms, max " +
+						target.slotIdle.maxIdleMillis() + "ms over " + target.slotIdle.fills() + " fills", NamedTextColor.YELLOW));
+
+					// Ping latency is owned by the engine, so it follows the lines above
+					target.engine.execute(() -> {
+						long rtt = target.health.averageRttMillis();
+
+						if (rtt >= 0) {
+							source.sendMessage(Component.text((targets.size() > 1 ? target.name + " main" : "Main") + " server ping: avg " + rtt +
+								"ms, admission pace " + Math.round(target.health.admissionFactor() * 100) + "%", NamedTextColor.YELLOW));
+						}
+					});
+				}
+
+				if (settings.queueServerNames.size() > 1) {
+					// Which queue servers are up is owned by the engine as well
+					target.engine.execute(() -> {
+						List<String> queueServers = new ArrayList<>();
+
+						for (String name: target.queueServers.names()) {
+							queueServers.add(name + " " + occupancy.get(name) + (target.queueServers.isUp(name) ? "" : " (DOWN)"));
+						}
+
+						source.sendMessage(Component.text("Queue servers (players): " + String.join(", ", queueServers), NamedTextColor.YELLOW));
+					});
+				}
 			}
 		}
 
@@ -911,50 +2040,234 @@ public class Queue {
 		}
 
 		private void handleReload(CommandSource source) {
-			loadServerConfig();
-			loadPriorityConfig();
-			loadPointConfig();
-			source.sendMessage(Component.text("Configuration reloaded successfully!", NamedTextColor.GREEN));
+			// The files are read on a scheduler thread; only the swap happens on the engines
+			server.getScheduler()
+				.buildTask(Queue.this, () -> reloadConfig(() ->
+					source.sendMessage(Component.text("Configuration reloaded successfully!", NamedTextColor.GREEN))))
+				.schedule();
 		}
 
-		private void handleList(CommandSource source) {
-			if (queueEntries.isEmpty()) {
-				source.sendMessage(Component.text("The queue is empty.", NamedTextColor.YELLOW));
-				return;
+		private void handleConvertPriority(CommandSource source) {
+			// Parsing a long YAML list is slow, so it happens on a scheduler thread like a reload
+			server.getScheduler().buildTask(Queue.this, () -> {
+				int count;
+
+				try {
+					count = QueueConfig.convertPriority(dataDirectory, logger);
+				} catch (IOException e) {
+					logger.error("Failed to convert " + QueueConfig.PRIORITY_FILE, e);
+					source.sendMessage(Component.text("Failed to convert the priority list, see the console for details.", NamedTextColor.RED));
+					return;
+				}
+
+				Component done = Component.text("Wrote " + count + " priority players to " + QueueConfig.PRIORITY_LIST_FILE +
+					". The list in " + QueueConfig.PRIORITY_FILE + " can now be emptied.", NamedTextColor.GREEN);
+
+				// The watcher reloads for the file just written; reloading here as well would load it twice
+				if (configWatcher != null && configWatcher.isWatching()) {
+					source.sendMessage(done);
+				} else {
+					reloadConfig(() -> source.sendMessage(done));
+				}
+			}).schedule();
+		}
+
+		private void handleList(CommandSource source, String[] args) {
+			// /queue list [target] [page] [tier|name]; a target name takes precedence over a filter of the same name
+			QueueTarget target = args.length > 1 ? findTarget(args[1]) : null;
+			int pageIndex = 1;
+
+			if (target != null) {
+				pageIndex = 2;
+			} else {
+				target = defaultTarget();
 			}
 
-			source.sendMessage(Component.text("=== Players in Queue (" + queueEntries.size() + ") ===", NamedTextColor.GOLD));
+			int requestedPage = 1;
+			int filterIndex = pageIndex;
 
-			// Create a snapshot to avoid concurrent modification
-			List<QueueEntry> snapshot = new ArrayList<>(queueEntries.values());
+			if (args.length > pageIndex) {
+				try {
+					requestedPage = Math.max(1, Integer.parseInt(args[pageIndex]));
+					filterIndex = pageIndex + 1;
+				} catch (NumberFormatException e) {
+					// Not a page number, so it is the filter
+				}
+			}
 
-			List<UUID> sortedQueue = snapshot.stream()
-				.sorted((e1, e2) -> {
-					int pointCompare = Integer.compare(e2.points, e1.points);
+			String filter = args.length > filterIndex ? args[filterIndex].toLowerCase() : null;
+			IntPredicate matches = listFilter(target, filter);
+			int page = requestedPage;
+			QueueTarget listed = target;
+			QueueIndex queueIndex = listed.queueIndex;
+			String title = targets.size() == 1 ? "Players in Queue" : "Players in Queue " + listed.name;
 
-					if (pointCompare != 0) return pointCompare;
-					return Integer.compare(e1.secondsPerPoint, e2.secondsPerPoint);
-				})
-				.map(e -> e.playerId)
-				.toList();
+			listed.engine.execute(() -> {
+				if (queueIndex.size() == 0) {
+					source.sendMessage(Component.text("The queue is empty.", NamedTextColor.YELLOW));
+					return;
+				}
 
-			int position = 1;
+				long now = clock.millis();
+				List<Component> lines = new ArrayList<>();
+				int shownPage;
+				boolean hasNext;
+
+				if (matches == null) {
+					// Served straight from the index: O(log n) to find the page, then one step per line
+					int pages = (queueIndex.size() + LIST_PAGE_SIZE - 1) / LIST_PAGE_SIZE;
+					shownPage = Math.min(page, pages);
+					hasNext = shownPage < pages;
+
+					lines.add(Component.text("=== " + title + " (" + queueIndex.size() + ") - Page " + shownPage + "/" + pages + " ===", NamedTextColor.GOLD));
+					queueIndex.forEachFrom((shownPage - 1) * LIST_PAGE_SIZE + 1, (slot, rank) -> {
+						lines.add(listLine(listed, slot, rank, now));
+						return lines.size() <= LIST_PAGE_SIZE;
+					});
+				} else {
+					// A filter has to walk the queue, but stops one match past the page
+					int skip = (page - 1) * LIST_PAGE_SIZE;
+					int[] seen = new int[1];
+					boolean[] more = new boolean[1];
+					List<Component> found = new ArrayList<>();
+
+					queueIndex.forEachFrom(1, (slot, rank) -> {
+						if (!matches.test(slot) || seen[0]++ < skip) return true;
+
+						if (found.size() == LIST_PAGE_SIZE) {
+							more[0] = true;
+							return false;
+						}
 
-			for (UUID playerId: sortedQueue) {
-				Optional<Player> player = server.getPlayer(playerId);
-				QueueEntry entry = queueEntries.get(playerId);
+						found.add(listLine(listed, slot, rank, now));
+						return true;
+					});
 
-				if (entry != null) {
-					if (player.isPresent()) {
-						source.sendMessage(Component.text(position + ". " + player.get().getUsername() +
-							" - Points: " + entry.points + " (" + entry.secondsPerPoint + "s/pt)", NamedTextColor.YELLOW));
-					} else {
-						source.sendMessage(Component.text(position + ". (Disconnected) - Points: " + entry.points, NamedTextColor.GRAY));
+					if (found.isEmpty()) {
+						source.sendMessage(Component.text(page == 1 ? "No queued players match '" + filter + "'." :
+							"No queued players match '" + filter + "' on page " + page + ".", NamedTextColor.YELLOW));
+						return;
 					}
+
+					shownPage = page;
+					hasNext = more[0];
+
+					lines.add(Component.text("=== " + title + " matching '" + filter + "' - Page " + shownPage + " ===", NamedTextColor.GOLD));
+					lines.addAll(found);
+				}
+
+				if (shownPage > 1 || hasNext) {
+					lines.add(listNavigation(listed, shownPage, hasNext, filter));
 				}
 
-				position++;
+				// One message per page, rather than one per player
+				source.sendMessage(Component.join(JoinConfiguration.newlines(), lines));
+			});
+		}
+
+		// null for no filter; "front", a tier name from the target's tiers, or else part of a username.
+		// Tests entry table slots, so it must only be used on the target's engine
+		private IntPredicate listFilter(QueueTarget target, String filter) {
+			if (filter == null) return null;
+
+			QueueEntryTable entries = target.queueEntries;
+
+			if (filter.equals("front")) {
+				return entries::isFront;
 			}
+
+			Integer secondsPerPoint = target.settings.tierFilters.get(filter);
+
+			if (secondsPerPoint != null) {
+				return slot -> !entries.isFront(slot) && entries.secondsPerPoint(slot) == secondsPerPoint;
+			}
+
+			return slot -> entries.username(slot) != null && entries.username(slot).toLowerCase().contains(filter);
+		}
+
+		private Component listLine(QueueTarget target, int slot, int position, long now) {
+			QueueEntryTable entries = target.queueEntries;
+			UUID playerId = entries.playerId(slot);
+			String name = entries.username(slot) != null ? entries.username(slot) : playerId.toString();
+
+			if (server.getPlayer(playerId).isPresent()) {
+				return Component.text(position + ". " + name + " - Points: " + entries.pointsAt(slot, now) + " (" +
+					entries.secondsPerPoint(slot) + "s/pt) - ETA: " + target.estimatedWait(slot, position), NamedTextColor.YELLOW);
+			}
+
+			return Component.text(position + ". " + name + " (Disconnected) - Points: " + entries.pointsAt(slot, now), NamedTextColor.GRAY);
+		}
+
+		private Component listNavigation(QueueTarget target, int page, boolean hasNext, String filter) {
+			// Only name the target when there is a choice, so single target links stay as they were
+			String command = targets.size() == 1 ? "/queue list " : "/queue list " + target.name + " ";
+			String suffix = filter == null ? "" : " " + filter;
+			Component previous = Component.text("[< Previous]", page > 1 ? NamedTextColor.AQUA : NamedTextColor.DARK_GRAY);
+			Component next = Component.text("[Next >]", hasNext ? NamedTextColor.AQUA : NamedTextColor.DARK_GRAY);
+
+			if (page > 1) {
+				previous = previous.clickEvent(ClickEvent.runCommand(command + (page - 1) + suffix));
+			}
+
+			if (hasNext) {
+				next = next.clickEvent(ClickEvent.runCommand(command + (page + 1) + suffix));
+			}
+
+			return Component.join(JoinConfiguration.separator(Component.text("   ")), previous, next);
+		}
+
+		private void handleExport(CommandSource source, String targetName) {
+			Collection<QueueTarget> selected = selectTargets(source, targetName);
+
+			if (selected == null) return;
+
+			long now = clock.millis();
+			List<CompletableFuture<String>> rows = new ArrayList<>();
+			AtomicInteger count = new AtomicInteger();
+
+			// Each target writes its own rows on its engine; they are joined in configuration order
+			for (QueueTarget target: selected) {
+				rows.add(target.engine.submit(() -> {
+					StringBuilder csv = new StringBuilder();
+
+					QueueEntryTable entries = target.queueEntries;
+
+					target.queueIndex.forEachInOrder((slot, rank) -> csv.append(target.name).append(',')
+						.append(rank).append(',')
+						.append(entries.playerId(slot)).append(',')
+						.append(entries.username(slot) != null ? entries.username(slot) : "").append(',')
+						.append(entries.pointsAt(slot, now)).append(',')
+						.append(entries.secondsPerPoint(slot)).append(',')
+						.append(entries.isFront(slot)).append(',')
+						.append(Instant.ofEpochMilli(entries.joinTime(slot))).append(',')
+						.append((now - entries.joinTime(slot)) / 1000).append(',')
+						.append(target.waitEstimator.etaSeconds(slot, rank)).append('\n'));
+
+					count.addAndGet(target.queueIndex.size());
+					return csv.toString();
+				}));
+			}
+
+			String name = "queue-" + EXPORT_TIMESTAMP.format(Instant.ofEpochMilli(now)) + ".csv";
+			Path file = dataDirectory.resolve("exports").resolve(name);
+
+			// Written off the engines; the rows are already a copy
+			CompletableFuture.allOf(rows.toArray(new CompletableFuture<?>[0])).thenRun(() -> server.getScheduler().buildTask(Queue.this, () -> {
+				StringBuilder csv = new StringBuilder("target,position,uuid,username,points,seconds_per_point,front,joined,waited_seconds,eta_seconds\n");
+
+				for (CompletableFuture<String> targetRows: rows) {
+					csv.append(targetRows.join());
+				}
+
+				try {
+					Files.createDirectories(file.getParent());
+					Files.writeString(file, csv);
+					source.sendMessage(Component.text("Exported " + count.get() + " queued players to exports/" + name, NamedTextColor.GREEN));
+				} catch (IOException e) {
+					logger.error("Failed to export the queue to " + file, e);
+					source.sendMessage(Component.text("Failed to export the queue, see the console for details.", NamedTextColor.RED));
+				}
+			}).schedule());
 		}
 	}
-}
\ No newline at end of file
+}
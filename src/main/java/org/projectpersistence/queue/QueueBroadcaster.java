@@ -0,0 +1,87 @@
+// QueueBroadcaster.java
+package org.projectpersistence.queue;
+
+import com.velocitypowered.api.proxy.Player;
+import net.kyori.adventure.text.Component;
+import org.slf4j.Logger;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Sends notices to everyone on the queue server without holding up the thread that raised them.
+// Notices are coalesced per topic: of the notices raised within COALESCE_MILLIS only the latest is sent, and
+// not even that if players were already sent the same notice last time, so an offline/online flap inside the
+// window sends nothing at all. Delivery is split into chunks that run on virtual threads, all sharing the one
+// message component.
+// Topic state is owned by the queue engine thread. Without a send executor, sends run on the calling thread.
+class QueueBroadcaster {
+
+	// How long notices of a topic are collected before the latest one is sent
+	static final long COALESCE_MILLIS = 1000;
+
+	private static final int CHUNK_SIZE = 256;
+
+	private final Logger logger;
+
+	private final ExecutorService senders;
+
+	// Latest notice per topic still waiting for its window to close
+	private final Map<String, Component> pending = new HashMap<>();
+
+	// Last notice per topic that was actually sent
+	private final Map<String, Component> delivered = new HashMap<>();
+
+	QueueBroadcaster(Logger logger, boolean threaded) {
+		this.logger = logger;
+		this.senders = threaded ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("queue-broadcast-", 0).factory()) : null;
+	}
+
+	// Returns true for the first notice of a topic in a window; the caller then runs flush(topic) once it closes
+	boolean offer(String topic, Component message) {
+		return pending.put(topic, message) == null;
+	}
+
+	// Sends the latest notice of the topic, unless it repeats the last one sent
+	void flush(String topic, Collection<Player> audience) {
+		Component message = pending.remove(topic);
+
+		if (message == null || message.equals(delivered.get(topic))) return;
+
+		delivered.put(topic, message);
+		send(message, audience);
+	}
+
+	private void send(Component message, Collection<Player> audience) {
+		Player[] players = audience.toArray(new Player[0]);
+
+		for (int from = 0; from < players.length; from += CHUNK_SIZE) {
+			int start = from;
+			int end = Math.min(players.length, from + CHUNK_SIZE);
+			Runnable chunk = () -> {
+				for (int i = start; i < end; i++) {
+					try {
+						players[i].sendMessage(message);
+					} catch (RuntimeException e) {
+						// One player's connection going away mustn't cost the rest of the chunk their notice
+						logger.debug("Failed to send a queue notice to " + players[i].getUsername(), e);
+					}
+				}
+			};
+
+			if (senders != null) {
+				senders.execute(chunk);
+			} else {
+				chunk.run();
+			}
+		}
+	}
+
+	void close() {
+		if (senders != null) {
+			senders.shutdown();
+		}
+	}
+}
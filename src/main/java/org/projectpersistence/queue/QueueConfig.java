@@ -0,0 +1,462 @@
+// QueueConfig.java
+package org.projectpersistence.queue;
+
+import org.slf4j.Logger;
+import org.spongepowered.configurate.CommentedConfigurationNode;
+import org.spongepowered.configurate.serialize.SerializationException;
+import org.spongepowered.configurate.yaml.YamlConfigurationLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Pattern;
+
+// Immutable configuration from server-config.yml, priority-players.yml (and priority-players.bin, if present)
+// and queue-points.yml.
+// load() parses all three files off the engine; the plugin then swaps the result in with one volatile write,
+// so readers on any thread see either the old configuration or the new one, never a mix, and nothing is
+// changed in place while they read it.
+// Each queue target (a main server with its own queue) has its own settings in a Target. A server-config.yml
+// without a targets section describes a single target, named after its main server, with the top-level keys;
+// with one, each target's keys fall back to the top-level ones, and queue-points.yml can give a target its own
+// tiers under targets.<name>.
+final class QueueConfig {
+
+	static final String SERVER_FILE = "server-config.yml";
+
+	static final String PRIORITY_FILE = "priority-players.yml";
+
+	// Large priority lists in PriorityList's binary format, e.g. synced from a store
+	static final String PRIORITY_LIST_FILE = "priority-players.bin";
+
+	static final String POINTS_FILE = "queue-points.yml";
+
+	private static final Pattern TARGET_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+	final int permissionCacheSeconds;
+
+	final int reconnectGraceSeconds;
+
+	final int reconnectGraceMaxEntries;
+
+	final int restoreGraceSeconds;
+
+	final boolean metricsHttpEnabled;
+
+	final int metricsHttpPort;
+
+	final Set<UUID> priorityPlayers;
+
+	final PriorityList priorityList;
+
+	// Queue targets by name, in configuration order; the first is where players queue unless they choose another
+	final Map<String, Target> targets;
+
+	// Kept so a server or points file that fails to load on reload falls back to the last good one
+	private final CommentedConfigurationNode server;
+
+	private final CommentedConfigurationNode points;
+
+	private QueueConfig(CommentedConfigurationNode server, Set<UUID> priorityPlayers, PriorityList priorityList, CommentedConfigurationNode points,
+		Logger logger) {
+		permissionCacheSeconds = Math.max(0, server.node("permission-cache-seconds").getInt(60));
+		reconnectGraceSeconds = server.node("reconnect-grace-seconds").getInt(300);
+		reconnectGraceMaxEntries = server.node("reconnect-grace-max-entries").getInt(50000);
+		restoreGraceSeconds = server.node("restore-grace-seconds").getInt(600);
+		metricsHttpEnabled = server.node("metrics-http-enabled").getBoolean(false);
+		metricsHttpPort = server.node("metrics-http-port").getInt(9225);
+
+		this.priorityPlayers = Collections.unmodifiableSet(priorityPlayers);
+		this.priorityList = priorityList;
+		this.server = server;
+		this.points = points;
+
+		Map<String, Target> targets = new LinkedHashMap<>();
+		CommentedConfigurationNode targetsNode = server.node("targets");
+
+		if (targetsNode.isMap() && !targetsNode.virtual()) {
+			for (Map.Entry<Object, ? extends CommentedConfigurationNode> target: targetsNode.childrenMap().entrySet()) {
+				String name = target.getKey().toString();
+
+				// Names are used in commands and as the target's state directory
+				if (!TARGET_NAME.matcher(name).matches()) {
+					logger.warn("Ignoring queue target '" + name + "', target names may only contain letters, digits, '-' and '_'");
+					continue;
+				}
+
+				targets.put(name, new Target(name, target.getValue(), server, pointsFor(points, name)));
+			}
+		}
+
+		if (targets.isEmpty()) {
+			String name = server.node("main-server").getString("main");
+			targets.put(name, new Target(name, server, server, points));
+		}
+
+		Set<String> mainServers = new HashSet<>();
+
+		for (Target target: targets.values()) {
+			if (!mainServers.add(target.mainServerName)) {
+				logger.warn("More than one queue target sends players to " + target.mainServerName + "; each will fill it up to its own limit");
+			}
+		}
+
+		this.targets = Collections.unmodifiableMap(targets);
+	}
+
+	// The target players queue for unless they choose another
+	Target defaultTarget() {
+		return targets.values().iterator().next();
+	}
+
+	// Whether the player is on either priority list (the queue.priority permission is checked separately)
+	boolean isPriority(UUID playerId) {
+		return priorityPlayers.contains(playerId) || priorityList.contains(playerId);
+	}
+
+	// Reads the three files, writing out defaults for any that don't exist yet. A file that can't be read keeps
+	// its part of the previous configuration, or the defaults if there is none
+	static QueueConfig load(Path dataDirectory, Logger logger, QueueConfig previous) {
+		CommentedConfigurationNode server = loadServer(dataDirectory.toFile(), logger);
+
+		if (server == null) {
+			// An empty node reads as the defaults
+			server = previous != null ? previous.server : CommentedConfigurationNode.root();
+		}
+
+		Set<UUID> priorityPlayers = loadPriority(dataDirectory.toFile(), logger);
+
+		if (priorityPlayers == null) {
+			priorityPlayers = previous != null ? previous.priorityPlayers : new HashSet<>();
+		}
+
+		PriorityList priorityList = loadPriorityList(dataDirectory, logger);
+
+		if (priorityList == null) {
+			priorityList = previous != null ? previous.priorityList : PriorityList.EMPTY;
+		}
+
+		CommentedConfigurationNode points = loadPoints(dataDirectory.toFile(), logger);
+
+		if (points == null) {
+			points = previous != null ? previous.points : CommentedConfigurationNode.root();
+		}
+
+		return new QueueConfig(server, priorityPlayers, priorityList, points, logger);
+	}
+
+	// A target's tiers come from targets.<name> in queue-points.yml if it has any there, else the top level
+	private static CommentedConfigurationNode pointsFor(CommentedConfigurationNode points, String target) {
+		CommentedConfigurationNode own = points.node("targets", target);
+		return own.node("tiers").virtual() && own.node("default-seconds").virtual() ? points : own;
+	}
+
+	// One queue: the main server it admits to, the server its players wait on, and how it admits them
+	static final class Target {
+
+		final String name;
+
+		final String mainServerName;
+
+		// The servers its players wait on, from queue-servers or else the single queue-server
+		final List<String> queueServerNames;
+
+		// Rendezvous hashing rather than least-loaded placement on the queue servers
+		final boolean hashPlacement;
+
+		final int mainServerMaxPlayers;
+
+		final boolean maxPlayersFromPing;
+
+		final int maxConcurrentConnects;
+
+		final int admissionDebounceMillis;
+
+		final double admissionRate;
+
+		final int admissionBurst;
+
+		final int healthCheckIntervalMillis;
+
+		final int healthCheckTimeoutMillis;
+
+		final int healthCheckMaxBackoffMillis;
+
+		final int healthCheckUpThreshold;
+
+		final int healthCheckDownThreshold;
+
+		final int healthCheckRttWindow;
+
+		final int healthCheckRttTargetMillis;
+
+		final int healthCheckRttLimitMillis;
+
+		final int actionBarIntervalMillis;
+
+		final int actionBarRefreshMillis;
+
+		// Tier permissions in priority order (highest first) to their seconds per point
+		final Map<String, Integer> pointTiers;
+
+		final int defaultSecondsPerPoint;
+
+		// Tier names /queue list can filter by, lower case, to their seconds per point
+		final Map<String, Integer> tierFilters;
+
+		// node holds the target's own keys, falling back to server's; the two are the same for a single target
+		private Target(String name, CommentedConfigurationNode node, CommentedConfigurationNode server, CommentedConfigurationNode points) {
+			this.name = name;
+			// A target under targets: that doesn't name its main server is named after it
+			mainServerName = node == server ? server.node("main-server").getString("main") : node.node("main-server").getString(name);
+			queueServerNames = queueServers(node, server);
+			hashPlacement = "hash".equalsIgnoreCase(setting(node, server, "queue-server-placement").getString("least-loaded"));
+			mainServerMaxPlayers = setting(node, server, "main-server-max-players").getInt(100);
+			maxPlayersFromPing = setting(node, server, "max-players-from-ping").getBoolean(false);
+			maxConcurrentConnects = Math.max(1, setting(node, server, "max-concurrent-connects").getInt(20));
+			admissionDebounceMillis = Math.max(0, setting(node, server, "admission-debounce-ms").getInt(100));
+			admissionRate = Math.max(0, setting(node, server, "admission-rate").getDouble(0));
+			admissionBurst = Math.max(1, setting(node, server, "admission-burst").getInt(10));
+			healthCheckIntervalMillis = Math.max(100, setting(node, server, "health-check-interval-ms").getInt(5000));
+			healthCheckTimeoutMillis = Math.max(100, setting(node, server, "health-check-timeout-ms").getInt(3000));
+			healthCheckMaxBackoffMillis = setting(node, server, "health-check-max-backoff-ms").getInt(30000);
+			healthCheckUpThreshold = setting(node, server, "health-check-up-threshold").getInt(2);
+			healthCheckDownThreshold = setting(node, server, "health-check-down-threshold").getInt(3);
+			healthCheckRttWindow = setting(node, server, "health-check-rtt-window").getInt(12);
+			healthCheckRttTargetMillis = setting(node, server, "health-check-rtt-target-ms").getInt(100);
+			healthCheckRttLimitMillis = setting(node, server, "health-check-rtt-limit-ms").getInt(1000);
+			actionBarIntervalMillis = Math.max(50, setting(node, server, "action-bar-interval-ms").getInt(500));
+			actionBarRefreshMillis = Math.max(actionBarIntervalMillis, setting(node, server, "action-bar-refresh-ms").getInt(2000));
+
+			Map<String, Integer> tiers = new LinkedHashMap<>();
+			CommentedConfigurationNode tiersNode = points.node("tiers");
+
+			if (!tiersNode.virtual()) {
+				for (Map.Entry<Object, ? extends CommentedConfigurationNode> tier: tiersNode.childrenMap().entrySet()) {
+					tiers.put(tier.getKey().toString(), Math.max(1, tier.getValue().getInt(60)));
+				}
+			}
+
+			pointTiers = Collections.unmodifiableMap(tiers);
+			defaultSecondsPerPoint = Math.max(1, points.node("default-seconds").getInt(60));
+
+			Map<String, Integer> filters = new HashMap<>();
+			filters.put("default", defaultSecondsPerPoint);
+
+			for (Map.Entry<String, Integer> tier: pointTiers.entrySet()) {
+				filters.put(tier.getKey().toLowerCase(), tier.getValue());
+			}
+
+			tierFilters = Collections.unmodifiableMap(filters);
+		}
+
+		boolean isQueueServer(String serverName) {
+			return queueServerNames.contains(serverName);
+		}
+
+		// The main server's player limit: as reported by its ping if configured to and it reported one,
+		// otherwise main-server-max-players
+		int capacity(int reportedMaxPlayers) {
+			return maxPlayersFromPing && reportedMaxPlayers > 0 ? reportedMaxPlayers : mainServerMaxPlayers;
+		}
+
+		// Whether queued players' rates have to be worked out again under this configuration
+		boolean tiersChanged(Target previous) {
+			return previous == null || previous.defaultSecondsPerPoint != defaultSecondsPerPoint || !previous.pointTiers.equals(pointTiers);
+		}
+
+		private static List<String> queueServers(CommentedConfigurationNode node, CommentedConfigurationNode server) {
+			List<String> queueServers = new ArrayList<>();
+
+			try {
+				for (String queueServer: setting(node, server, "queue-servers").getList(String.class, new ArrayList<>())) {
+					if (queueServer != null && !queueServer.isBlank() && !queueServers.contains(queueServer)) {
+						queueServers.add(queueServer);
+					}
+				}
+			} catch (SerializationException e) {
+				// Not a list of names, so there is only queue-server
+			}
+
+			if (queueServers.isEmpty()) {
+				queueServers.add(setting(node, server, "queue-server").getString("queue"));
+			}
+
+			return Collections.unmodifiableList(queueServers);
+		}
+
+		private static CommentedConfigurationNode setting(CommentedConfigurationNode node, CommentedConfigurationNode server, String key) {
+			CommentedConfigurationNode own = node.node(key);
+			return own.virtual() ? server.node(key) : own;
+		}
+	}
+
+	// Writes the UUIDs in priority-players.yml into priority-players.bin, keeping any already in it, and returns
+	// how many the binary list now holds. The YAML list can be emptied afterwards so reloads don't parse it
+	static int convertPriority(Path dataDirectory, Logger logger) throws IOException {
+		Set<UUID> priorityPlayers = loadPriority(dataDirectory.toFile(), logger);
+
+		if (priorityPlayers == null) {
+			throw new IOException("Failed to read " + PRIORITY_FILE);
+		}
+
+		Path listFile = dataDirectory.resolve(PRIORITY_LIST_FILE);
+		Set<UUID> merged = new HashSet<>(priorityPlayers);
+
+		if (Files.exists(listFile)) {
+			merged.addAll(Arrays.asList(PriorityList.map(listFile).toArray()));
+		}
+
+		PriorityList.write(listFile, merged);
+		logger.info("Wrote " + merged.size() + " priority players to " + PRIORITY_LIST_FILE);
+		return merged.size();
+	}
+
+	// Returns the empty list if there is no binary list, or null if it couldn't be read
+	private static PriorityList loadPriorityList(Path dataDirectory, Logger logger) {
+		Path listFile = dataDirectory.resolve(PRIORITY_LIST_FILE);
+
+		if (!Files.exists(listFile)) return PriorityList.EMPTY;
+
+		try {
+			PriorityList priorityList = PriorityList.map(listFile);
+			logger.info("Loaded " + priorityList.size() + " priority players from " + PRIORITY_LIST_FILE);
+			return priorityList;
+		} catch (IOException e) {
+			logger.error("Failed to load " + PRIORITY_LIST_FILE, e);
+			return null;
+		}
+	}
+
+	// Returns null if the file couldn't be read
+	private static CommentedConfigurationNode loadServer(File directory, Logger logger) {
+		File configFile = new File(directory, SERVER_FILE);
+		YamlConfigurationLoader loader = YamlConfigurationLoader.builder()
+			.file(configFile)
+			.build();
+
+		try {
+			CommentedConfigurationNode root;
+
+			if (!configFile.exists()) {
+				// Create default configuration
+				root = loader.createNode();
+				root.node("main-server").set("main").comment("The name of the main server in your Velocity configuration");
+				root.node("queue-server").set("queue").comment("The name of the queue/lobby server in your Velocity configuration");
+				root.node("queue-server-placement").set("least-loaded").comment("How players are spread over the servers in queue-servers, if set: least-loaded or hash");
+				root.node("main-server-max-players").set(100).comment("Maximum players allowed on the main server (admins can bypass this)");
+				root.node("max-players-from-ping").set(false).comment("Use the max players the main server reports in its status ping instead of main-server-max-players, once it has reported one");
+				root.node("max-concurrent-connects").set(20).comment("Maximum queued players being connected to the main server at the same time");
+				root.node("admission-debounce-ms").set(100).comment("Delay before freed main server slots are filled, so a burst of departures is admitted together, in milliseconds");
+				root.node("admission-rate").set(0).comment("Maximum queued players sent to the main server per second, 0 for no limit");
+				root.node("admission-burst").set(10).comment("How many queued players may be sent at once when the admission rate limit has built up room");
+				root.node("health-check-interval-ms").set(5000).comment("How often the main server is pinged while it is online, in milliseconds");
+				root.node("health-check-timeout-ms").set(3000).comment("How long a ping may take before it counts as failed, in milliseconds");
+				root.node("health-check-max-backoff-ms").set(30000).comment("Longest gap between pings while the main server is offline; the gap doubles after every failure up to this, in milliseconds");
+				root.node("health-check-up-threshold").set(2).comment("Successful pings in a row needed to mark the main server online again");
+				root.node("health-check-down-threshold").set(3).comment("Failed pings in a row needed to mark the main server offline");
+				root.node("health-check-rtt-window").set(12).comment("How many recent pings the average round trip time is taken over");
+				root.node("health-check-rtt-target-ms").set(100).comment("Average ping round trip time above which admission from the queue starts to slow down, in milliseconds");
+				root.node("health-check-rtt-limit-ms").set(1000).comment("Average ping round trip time at which admission is slowed the most, to a tenth of its normal pace, in milliseconds");
+				root.node("permission-cache-seconds").set(60).comment("How long a player's resolved queue permissions are cached before being checked again, in seconds");
+				root.node("action-bar-interval-ms").set(500).comment("How often queued players' action bars are checked for changes, in milliseconds");
+				root.node("action-bar-refresh-ms").set(2000).comment("How often an unchanged action bar is re-sent so it doesn't fade, in milliseconds");
+				root.node("reconnect-grace-seconds").set(300).comment("How long a disconnected player's queue progress is kept for them to reconnect, in seconds");
+				root.node("reconnect-grace-max-entries").set(50000).comment("Maximum number of disconnected players whose queue progress is kept");
+				root.node("restore-grace-seconds").set(600).comment("After a restart, how long players have to reconnect and pick up their saved queue progress, in seconds");
+				root.node("metrics-http-enabled").set(false).comment("Serve queue metrics for Prometheus at http://127.0.0.1:<metrics-http-port>/metrics");
+				root.node("metrics-http-port").set(9225).comment("Port of the metrics endpoint, which only listens on localhost");
+				loader.save(root);
+				logger.info("Created default " + SERVER_FILE);
+			} else {
+				root = loader.load();
+			}
+
+			logger.info("Loaded server configuration - Main: " + root.node("main-server").getString("main") +
+				", Queue: " + root.node("queue-server").getString("queue"));
+			return root;
+		} catch (IOException e) {
+			logger.error("Failed to load server configuration", e);
+			return null;
+		}
+	}
+
+	// Returns null if the file couldn't be read
+	private static Set<UUID> loadPriority(File directory, Logger logger) {
+		File configFile = new File(directory, PRIORITY_FILE);
+
+		try {
+			YamlConfigurationLoader loader = YamlConfigurationLoader.builder()
+				.file(configFile)
+				.build();
+
+			CommentedConfigurationNode root;
+
+			if (!configFile.exists()) {
+				// Create default configuration
+				root = loader.createNode();
+				root.node("priority-players").setList(String.class, Arrays.asList(
+					"00000000-0000-0000-0000-000000000000"
+				)).comment("List of player UUIDs with priority queue access. Players can also get priority via the queue.priority permission.");
+				loader.save(root);
+				logger.info("Created default " + PRIORITY_FILE);
+			} else {
+				root = loader.load();
+			}
+
+			Set<UUID> priorityPlayers = new HashSet<>();
+			List<String> uuidStrings = root.node("priority-players").getList(String.class, new ArrayList<>());
+
+			for (String uuidString: uuidStrings) {
+				try {
+					priorityPlayers.add(UUID.fromString(uuidString));
+				} catch (IllegalArgumentException e) {
+					logger.warn("Invalid UUID in " + PRIORITY_FILE + ": " + uuidString);
+				}
+			}
+
+			logger.info("Loaded " + priorityPlayers.size() + " priority players");
+			return priorityPlayers;
+		} catch (IOException e) {
+			logger.error("Failed to load priority configuration", e);
+			return null;
+		}
+	}
+
+	// Returns null if the file couldn't be read
+	private static CommentedConfigurationNode loadPoints(File directory, Logger logger) {
+		File configFile = new File(directory, POINTS_FILE);
+
+		try {
+			YamlConfigurationLoader loader = YamlConfigurationLoader.builder()
+				.file(configFile)
+				.build();
+
+			CommentedConfigurationNode root;
+
+			if (!configFile.exists()) {
+				// Create default configuration with example tiers
+				root = loader.createNode();
+
+				root.node("tiers", "queue.vip.diamond").set(10).comment("VIP Diamond: 1 point every 10 seconds");
+				root.node("tiers", "queue.vip.gold").set(20).comment("VIP Gold: 1 point every 20 seconds");
+				root.node("tiers", "queue.vip.silver").set(30).comment("VIP Silver: 1 point every 30 seconds");
+				root.node("tiers", "queue.vip").set(45).comment("VIP: 1 point every 45 seconds");
+				root.node("default-seconds").set(60).comment("Default for players without any tier permission");
+
+				loader.save(root);
+				logger.info("Created default " + POINTS_FILE);
+			} else {
+				root = loader.load();
+			}
+
+			logger.info("Loaded " + root.node("tiers").childrenMap().size() + " queue point tiers");
+			return root;
+		} catch (IOException e) {
+			logger.error("Failed to load queue points configuration", e);
+			return null;
+		}
+	}
+}
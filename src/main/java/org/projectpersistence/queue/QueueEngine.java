@@ -0,0 +1,148 @@
+// QueueEngine.java
+package org.projectpersistence.queue;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Single writer for all of a queue target's state.
+// Event handlers, scheduled tasks, commands and connect callbacks never touch the queue directly; they submit
+// commands to a lock-free multi-producer queue that one engine thread drains in order, so the queue structures
+// need no locks and a check-then-act inside a command can't race with anything.
+// After each batch the engine publishes an immutable snapshot that other threads read without coordination.
+// Without start() no thread is created and commands only run when drain() is called, for driving the queue by hand.
+class QueueEngine {
+
+	// Bounds a batch so a steady stream of commands can't hold back the snapshot indefinitely
+	private static final int MAX_BATCH = 1024;
+
+	private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+	private final String threadName;
+
+	private final Logger logger;
+
+	// Runs on the engine thread after every batch, to publish the state it changed
+	private final Supplier<QueueSnapshot> publisher;
+
+	private volatile QueueSnapshot snapshot = QueueSnapshot.EMPTY;
+
+	private Thread thread;
+
+	private volatile boolean running;
+
+	// Set while the engine thread is parked, so producers only unpark it when it is actually waiting
+	private volatile boolean waiting;
+
+	QueueEngine(String threadName, Logger logger, Supplier<QueueSnapshot> publisher) {
+		this.threadName = threadName;
+		this.logger = logger;
+		this.publisher = publisher;
+	}
+
+	synchronized void start() {
+		if (thread != null) return;
+
+		running = true;
+		thread = new Thread(this::run, threadName);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	// Runs the commands already submitted, then stops the engine thread
+	void stop(long timeoutMillis) {
+		Thread engineThread;
+
+		synchronized (this) {
+			engineThread = thread;
+			running = false;
+		}
+
+		if (engineThread == null) return;
+
+		LockSupport.unpark(engineThread);
+
+		try {
+			engineThread.join(timeoutMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (engineThread.isAlive()) {
+			logger.warn(threadName + " did not stop within " + timeoutMillis + "ms");
+		}
+	}
+
+	void execute(Runnable command) {
+		commands.offer(command);
+
+		if (waiting) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	// Runs a query or command on the engine and completes with its result there
+	<T> CompletableFuture<T> submit(Supplier<T> query) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+
+		execute(() -> {
+			try {
+				future.complete(query.get());
+			} catch (Throwable t) {
+				future.completeExceptionally(t);
+			}
+		});
+
+		return future;
+	}
+
+	// The state published after the last batch; safe to read from any thread
+	QueueSnapshot snapshot() {
+		return snapshot;
+	}
+
+	// Runs up to one batch of pending commands on the calling thread and returns how many ran
+	int drain() {
+		int ran = 0;
+		Runnable command;
+
+		while (ran < MAX_BATCH && (command = commands.poll()) != null) {
+			try {
+				command.run();
+			} catch (Throwable t) {
+				logger.error("Queue command failed", t);
+			}
+
+			ran++;
+		}
+
+		if (ran > 0) {
+			snapshot = publisher.get();
+		}
+
+		return ran;
+	}
+
+	private void run() {
+		while (running) {
+			if (drain() > 0) continue;
+
+			waiting = true;
+
+			// Checked again after announcing the wait, so a command offered in between is never missed
+			if (commands.isEmpty() && running) {
+				LockSupport.parkNanos(this, TimeUnit.SECONDS.toNanos(1));
+			}
+
+			waiting = false;
+		}
+
+		while (drain() > 0) {
+			// Finish what was submitted before the stop
+		}
+	}
+}
@@ -0,0 +1,348 @@
+// QueueEntryTable.java
+package org.projectpersistence.queue;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+// The queue's entries, kept as slot-indexed primitive arrays instead of one object per queued player.
+// An entry is a slot number: its UUID bits, join time, rate and flags sit at that index in parallel arrays,
+// as do the QueueIndex tree links, the PointTimer wheel links and what PositionDisplay last showed, so the
+// structures built over the queue link slots by int and allocate nothing per entry.
+// Slots are found by player through an open-addressing table of slot + 1 (0 marks an empty bucket) that
+// compares the stored UUID bits directly. Freed slots go on a free list for the next insert, and
+// backward-shift deletion keeps probe chains intact without tombstones.
+// A slot keeps its number for as long as its entry is queued: growing copies the arrays in place, and they
+// only shrink back once the queue has emptied out, so a launch day peak isn't held on to.
+// Not thread safe; it is owned by the queue engine thread.
+class QueueEntryTable {
+
+	// Marks a missing slot, and the end of a link in the arrays below
+	static final int NONE = -1;
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	private static final byte USED = 1;
+	private static final byte FRONT = 2;
+	private static final byte INDEXED = 4;
+
+	private long[] mostBits;
+	private long[] leastBits;
+	private long[] joinTimes;
+
+	// Points accrue at the slot's rate from this time; the join time until the entry's rate is changed
+	private long[] pointsSince;
+
+	private int[] rates;
+	private byte[] flags;
+
+	// Username when the player joined, for listing the queue; null for entries restored before they reconnect
+	private String[] usernames;
+
+	// Owned by QueueIndex: points as last applied to the ordering, and the slot's tree links, height and size.
+	// An AVL tree over two billion slots is still under 50 high, so the height fits a byte
+	int[] indexedPoints;
+	int[] indexLeft;
+	int[] indexRight;
+	byte[] indexHeight;
+	int[] indexSize;
+
+	// Owned by PointTimer: the slot's next point boundary and its place in a wheel bucket
+	long[] nextBoundary;
+	int[] timerBucket;
+	int[] timerPrev;
+	int[] timerNext;
+
+	// Owned by PositionDisplay: what the player's action bar last showed
+	int[] displayedRank;
+	int[] displayedPoints;
+	byte[] displayedFlags;
+	int[] displayedEta;
+
+	// Owned by WaitEstimator: place among queued entries of the same tier as of the last display pass
+	int[] tierRank;
+
+	// Slots below used that were freed, reused before used grows; only as large as churn has needed
+	private int[] freeSlots;
+
+	private int freeCount;
+
+	private int used;
+
+	private int size;
+
+	// Always at least twice the slot capacity, so probe chains stay short
+	private int[] table;
+
+	QueueEntryTable() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	// Returns the player's slot, or NONE if they have no entry
+	int slot(UUID playerId) {
+		long most = playerId.getMostSignificantBits();
+		long least = playerId.getLeastSignificantBits();
+		int mask = table.length - 1;
+		int bucket = hash(most, least) & mask;
+
+		while (table[bucket] != 0) {
+			int slot = table[bucket] - 1;
+
+			if (mostBits[slot] == most && leastBits[slot] == least) return slot;
+
+			bucket = (bucket + 1) & mask;
+		}
+
+		return NONE;
+	}
+
+	boolean containsKey(UUID playerId) {
+		return slot(playerId) != NONE;
+	}
+
+	// Adds an entry for a player who has none, returning its slot
+	int put(EntryRecord record, String username) {
+		if (freeCount == 0 && used == rates.length) {
+			grow(rates.length * 2);
+		}
+
+		int slot = freeCount > 0 ? freeSlots[--freeCount] : used++;
+		mostBits[slot] = record.playerId.getMostSignificantBits();
+		leastBits[slot] = record.playerId.getLeastSignificantBits();
+		joinTimes[slot] = record.joinTime;
+		pointsSince[slot] = record.pointsSince;
+		rates[slot] = record.secondsPerPoint;
+		flags[slot] = record.front ? USED | FRONT : USED;
+		usernames[slot] = username;
+		indexLeft[slot] = NONE;
+		indexRight[slot] = NONE;
+		timerBucket[slot] = NONE;
+		timerPrev[slot] = NONE;
+		timerNext[slot] = NONE;
+		displayedRank[slot] = 0;
+		displayedPoints[slot] = -1;
+		displayedFlags[slot] = 0;
+		displayedEta[slot] = -1;
+		tierRank[slot] = 0;
+		size++;
+		insert(slot);
+		return slot;
+	}
+
+	// Frees the slot, which must already be out of the QueueIndex and PointTimer
+	void remove(int slot) {
+		int mask = table.length - 1;
+		int bucket = hash(mostBits[slot], leastBits[slot]) & mask;
+
+		while (table[bucket] != slot + 1) {
+			bucket = (bucket + 1) & mask;
+		}
+
+		table[bucket] = 0;
+		shiftBack(bucket);
+		flags[slot] = 0;
+		usernames[slot] = null;
+		size--;
+
+		if (size == 0 && rates.length > INITIAL_CAPACITY) {
+			allocate(INITIAL_CAPACITY);
+			return;
+		}
+
+		if (freeCount == freeSlots.length) {
+			freeSlots = Arrays.copyOf(freeSlots, Math.max(16, freeCount * 2));
+		}
+
+		freeSlots[freeCount++] = slot;
+	}
+
+	// The slot's fields as a record, to carry the entry past its removal
+	EntryRecord record(int slot) {
+		return new EntryRecord(playerId(slot), joinTimes[slot], pointsSince[slot], rates[slot], isFront(slot));
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	// Slots to iterate, skipping those that are not isUsed()
+	int slots() {
+		return used;
+	}
+
+	boolean isUsed(int slot) {
+		return (flags[slot] & USED) != 0;
+	}
+
+	UUID playerId(int slot) {
+		return new UUID(mostBits[slot], leastBits[slot]);
+	}
+
+	long mostBits(int slot) {
+		return mostBits[slot];
+	}
+
+	long leastBits(int slot) {
+		return leastBits[slot];
+	}
+
+	long joinTime(int slot) {
+		return joinTimes[slot];
+	}
+
+	long pointsSince(int slot) {
+		return pointsSince[slot];
+	}
+
+	int secondsPerPoint(int slot) {
+		return rates[slot];
+	}
+
+	boolean isFront(int slot) {
+		return (flags[slot] & FRONT) != 0;
+	}
+
+	String username(int slot) {
+		return usernames[slot];
+	}
+
+	// True while the slot is linked into the QueueIndex (false while an admission is in flight)
+	boolean isIndexed(int slot) {
+		return (flags[slot] & INDEXED) != 0;
+	}
+
+	// Only the QueueIndex changes these three
+	void setIndexed(int slot, boolean indexed) {
+		flags[slot] = (byte) (indexed ? flags[slot] | INDEXED : flags[slot] & ~INDEXED);
+	}
+
+	void setPointsSince(int slot, long since) {
+		pointsSince[slot] = since;
+	}
+
+	void setSecondsPerPoint(int slot, int secondsPerPoint) {
+		rates[slot] = secondsPerPoint;
+	}
+
+	// Points follow directly from the wait time, so they are computed on demand instead of stored
+	int pointsAt(int slot, long now) {
+		long timePassed = (now - pointsSince[slot]) / 1000; // Convert to seconds
+		return (int)(timePassed / rates[slot]);
+	}
+
+	// Time at which the slot's entry, holding the given points, earns its next one
+	long boundaryAfter(int slot, int points) {
+		return pointsSince[slot] + (points + 1L) * rates[slot] * 1000L;
+	}
+
+	// Where pointsSince has to move for a new rate to give the same points, and the same progress towards
+	// the next one, as the current rate does at now
+	long pointsSinceAt(int slot, int newSecondsPerPoint, long now) {
+		return now - (now - pointsSince[slot]) * newSecondsPerPoint / rates[slot];
+	}
+
+	private void insert(int slot) {
+		int mask = table.length - 1;
+		int bucket = hash(mostBits[slot], leastBits[slot]) & mask;
+
+		while (table[bucket] != 0) {
+			bucket = (bucket + 1) & mask;
+		}
+
+		table[bucket] = slot + 1;
+	}
+
+	// Backward-shift deletion, as in ReconnectGraceCache
+	private void shiftBack(int gap) {
+		int mask = table.length - 1;
+		int bucket = (gap + 1) & mask;
+
+		while (table[bucket] != 0) {
+			int slot = table[bucket] - 1;
+			int home = hash(mostBits[slot], leastBits[slot]) & mask;
+
+			// Move the entry into the gap if its home bucket does not lie between the gap and its current bucket
+			if (((bucket - home) & mask) >= ((bucket - gap) & mask)) {
+				table[gap] = table[bucket];
+				table[bucket] = 0;
+				gap = bucket;
+			}
+
+			bucket = (bucket + 1) & mask;
+		}
+	}
+
+	// Extends every array to the given capacity, keeping slot numbers, and rebuilds the table to match
+	private void grow(int capacity) {
+		mostBits = Arrays.copyOf(mostBits, capacity);
+		leastBits = Arrays.copyOf(leastBits, capacity);
+		joinTimes = Arrays.copyOf(joinTimes, capacity);
+		pointsSince = Arrays.copyOf(pointsSince, capacity);
+		rates = Arrays.copyOf(rates, capacity);
+		flags = Arrays.copyOf(flags, capacity);
+		usernames = Arrays.copyOf(usernames, capacity);
+		indexedPoints = Arrays.copyOf(indexedPoints, capacity);
+		indexLeft = Arrays.copyOf(indexLeft, capacity);
+		indexRight = Arrays.copyOf(indexRight, capacity);
+		indexHeight = Arrays.copyOf(indexHeight, capacity);
+		indexSize = Arrays.copyOf(indexSize, capacity);
+		nextBoundary = Arrays.copyOf(nextBoundary, capacity);
+		timerBucket = Arrays.copyOf(timerBucket, capacity);
+		timerPrev = Arrays.copyOf(timerPrev, capacity);
+		timerNext = Arrays.copyOf(timerNext, capacity);
+		displayedRank = Arrays.copyOf(displayedRank, capacity);
+		displayedPoints = Arrays.copyOf(displayedPoints, capacity);
+		displayedFlags = Arrays.copyOf(displayedFlags, capacity);
+		displayedEta = Arrays.copyOf(displayedEta, capacity);
+		tierRank = Arrays.copyOf(tierRank, capacity);
+		table = new int[tableLength(capacity)];
+
+		for (int slot = 0; slot < used; slot++) {
+			if (isUsed(slot)) {
+				insert(slot);
+			}
+		}
+	}
+
+	// Starts over with empty arrays of the given capacity
+	private void allocate(int capacity) {
+		mostBits = new long[capacity];
+		leastBits = new long[capacity];
+		joinTimes = new long[capacity];
+		pointsSince = new long[capacity];
+		rates = new int[capacity];
+		flags = new byte[capacity];
+		usernames = new String[capacity];
+		indexedPoints = new int[capacity];
+		indexLeft = new int[capacity];
+		indexRight = new int[capacity];
+		indexHeight = new byte[capacity];
+		indexSize = new int[capacity];
+		nextBoundary = new long[capacity];
+		timerBucket = new int[capacity];
+		timerPrev = new int[capacity];
+		timerNext = new int[capacity];
+		displayedRank = new int[capacity];
+		displayedPoints = new int[capacity];
+		displayedFlags = new byte[capacity];
+		displayedEta = new int[capacity];
+		tierRank = new int[capacity];
+		freeSlots = new int[0];
+		freeCount = 0;
+		used = 0;
+		table = new int[tableLength(capacity)];
+	}
+
+	private static int tableLength(int capacity) {
+		return Integer.highestOneBit(Math.max(capacity, 2) - 1) << 2;
+	}
+
+	private static int hash(long most, long least) {
+		long bits = most ^ least;
+		int hash = (int)(bits ^ (bits >>> 32));
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,341 @@
+// QueueIndex.java
+package org.projectpersistence.queue;
+
+// Ordered index over the queue so the next player and any player's position can be found without sorting.
+// Entries are ordered front-of-queue admins first, then by points (descending), seconds per point (ascending)
+// and join time.
+// Backed by an AVL tree where every node also tracks its subtree size, which gives O(log n) rank lookups.
+// The tree is intrusive: nodes are entry table slots, and their links, height and subtree size live in the
+// table's index arrays, so indexing an entry allocates nothing.
+// Points and seconds per point of an indexed entry must only be changed through reposition() and retier().
+// Not thread safe; it is owned by the queue engine thread.
+class QueueIndex {
+
+	private static final int NONE = QueueEntryTable.NONE;
+
+	private final QueueEntryTable entries;
+
+	private int root = NONE;
+
+	// Bumped on every change to membership or ordering so readers can tell when a pass is needed
+	private long modCount;
+
+	// Reused by forEachInOrder; an AVL tree over any realistic queue is far shallower than this
+	private final int[] traversal = new int[64];
+
+	QueueIndex(QueueEntryTable entries) {
+		this.entries = entries;
+	}
+
+	// Orders two slots as the queue does; equal only for the same player
+	int compare(int a, int b) {
+		boolean frontA = entries.isFront(a);
+
+		if (frontA != entries.isFront(b)) return frontA ? -1 : 1;
+
+		int pointCompare = Integer.compare(entries.indexedPoints[b], entries.indexedPoints[a]);
+
+		if (pointCompare != 0) return pointCompare;
+
+		int rateCompare = Integer.compare(entries.secondsPerPoint(a), entries.secondsPerPoint(b));
+
+		if (rateCompare != 0) return rateCompare;
+
+		int joinCompare = Long.compare(entries.joinTime(a), entries.joinTime(b));
+
+		if (joinCompare != 0) return joinCompare;
+
+		// As UUID.compareTo does
+		int mostCompare = Long.compare(entries.mostBits(a), entries.mostBits(b));
+		return mostCompare != 0 ? mostCompare : Long.compare(entries.leastBits(a), entries.leastBits(b));
+	}
+
+	void add(int slot) {
+		if (!entries.isIndexed(slot)) {
+			root = insert(root, slot);
+			entries.setIndexed(slot, true);
+			modCount++;
+		}
+	}
+
+	// Returns false if the slot was not indexed
+	boolean remove(int slot) {
+		if (!entries.isIndexed(slot)) return false;
+
+		root = delete(root, slot);
+		entries.setIndexed(slot, false);
+		entries.indexLeft[slot] = NONE;
+		entries.indexRight[slot] = NONE;
+		modCount++;
+		return true;
+	}
+
+	// Returns the head of the queue without removing it, or NONE if empty
+	int peek() {
+		if (root == NONE) return NONE;
+
+		int node = root;
+
+		while (entries.indexLeft[node] != NONE) {
+			node = entries.indexLeft[node];
+		}
+
+		return node;
+	}
+
+	// Removes and returns the head of the queue, or NONE if empty
+	int poll() {
+		int head = peek();
+
+		if (head != NONE) {
+			remove(head);
+		}
+
+		return head;
+	}
+
+	// Updates a slot's points, moving it to its new place in the ordering if needed
+	void reposition(int slot, int points) {
+		if (entries.indexedPoints[slot] == points) return;
+
+		if (entries.isIndexed(slot)) {
+			root = delete(root, slot);
+			entries.indexedPoints[slot] = points;
+			root = insert(root, slot);
+		} else {
+			entries.indexedPoints[slot] = points;
+		}
+
+		modCount++;
+	}
+
+	// Updates a slot's rate and the time its points accrue from. The rate breaks ties in the ordering, so the
+	// slot is moved if needed
+	void retier(int slot, int secondsPerPoint, long pointsSince) {
+		entries.setPointsSince(slot, pointsSince);
+
+		if (entries.secondsPerPoint(slot) == secondsPerPoint) return;
+
+		if (entries.isIndexed(slot)) {
+			root = delete(root, slot);
+			entries.setSecondsPerPoint(slot, secondsPerPoint);
+			root = insert(root, slot);
+		} else {
+			entries.setSecondsPerPoint(slot, secondsPerPoint);
+		}
+
+		modCount++;
+	}
+
+	// Returns the 1-based position of a slot in the queue, or -1 if it is not indexed
+	int rank(int slot) {
+		if (!entries.isIndexed(slot)) return -1;
+
+		int rank = 0;
+		int node = root;
+
+		while (node != NONE) {
+			int compare = compare(slot, node);
+
+			if (compare < 0) {
+				node = entries.indexLeft[node];
+			} else if (compare > 0) {
+				rank += size(entries.indexLeft[node]) + 1;
+				node = entries.indexRight[node];
+			} else {
+				return rank + size(entries.indexLeft[node]) + 1;
+			}
+		}
+
+		return -1;
+	}
+
+	int size() {
+		return size(root);
+	}
+
+	long modCount() {
+		return modCount;
+	}
+
+	// Visits every indexed slot from the head of the queue with its 1-based position.
+	// The visitor runs on the engine thread and must not modify the index or the entry table.
+	void forEachInOrder(Visitor visitor) {
+		int depth = 0;
+		int rank = 0;
+		int node = root;
+
+		while (node != NONE || depth > 0) {
+			while (node != NONE) {
+				traversal[depth++] = node;
+				node = entries.indexLeft[node];
+			}
+
+			node = traversal[--depth];
+			visitor.visit(node, ++rank);
+			node = entries.indexRight[node];
+		}
+	}
+
+	// Visits indexed slots in order starting at the given 1-based position, until the cursor returns false.
+	// Finding the start is O(log n), so a page of the queue costs O(log n + page size).
+	// The cursor must not modify the index or the entry table.
+	void forEachFrom(int fromRank, Cursor cursor) {
+		if (fromRank < 1) fromRank = 1;
+
+		int depth = 0;
+		int skip = fromRank - 1;
+		int node = root;
+
+		// Descend to the start, keeping the nodes still to be visited after it on the stack
+		while (node != NONE) {
+			int leftSize = size(entries.indexLeft[node]);
+
+			if (skip < leftSize) {
+				traversal[depth++] = node;
+				node = entries.indexLeft[node];
+			} else if (skip == leftSize) {
+				traversal[depth++] = node;
+				break;
+			} else {
+				skip -= leftSize + 1;
+				node = entries.indexRight[node];
+			}
+		}
+
+		int rank = fromRank;
+
+		while (depth > 0) {
+			node = traversal[--depth];
+
+			if (!cursor.visit(node, rank++)) return;
+
+			node = entries.indexRight[node];
+
+			while (node != NONE) {
+				traversal[depth++] = node;
+				node = entries.indexLeft[node];
+			}
+		}
+	}
+
+	interface Visitor {
+		void visit(int slot, int rank);
+	}
+
+	interface Cursor {
+		boolean visit(int slot, int rank);
+	}
+
+	private int insert(int node, int slot) {
+		if (node == NONE) {
+			entries.indexLeft[slot] = NONE;
+			entries.indexRight[slot] = NONE;
+			entries.indexHeight[slot] = 1;
+			entries.indexSize[slot] = 1;
+			return slot;
+		}
+
+		if (compare(slot, node) < 0) {
+			entries.indexLeft[node] = insert(entries.indexLeft[node], slot);
+		} else {
+			entries.indexRight[node] = insert(entries.indexRight[node], slot);
+		}
+
+		return balance(node);
+	}
+
+	private int delete(int node, int slot) {
+		if (node == NONE) return NONE;
+
+		int compare = compare(slot, node);
+
+		if (compare < 0) {
+			entries.indexLeft[node] = delete(entries.indexLeft[node], slot);
+		} else if (compare > 0) {
+			entries.indexRight[node] = delete(entries.indexRight[node], slot);
+		} else {
+			int left = entries.indexLeft[node];
+			int right = entries.indexRight[node];
+
+			if (left == NONE) return right;
+			if (right == NONE) return left;
+
+			// Replace the node with its in-order successor
+			int successor = right;
+
+			while (entries.indexLeft[successor] != NONE) {
+				successor = entries.indexLeft[successor];
+			}
+
+			entries.indexRight[successor] = deleteMin(right);
+			entries.indexLeft[successor] = left;
+			node = successor;
+		}
+
+		return balance(node);
+	}
+
+	private int deleteMin(int node) {
+		if (entries.indexLeft[node] == NONE) return entries.indexRight[node];
+
+		entries.indexLeft[node] = deleteMin(entries.indexLeft[node]);
+		return balance(node);
+	}
+
+	private int balance(int node) {
+		update(node);
+		int left = entries.indexLeft[node];
+		int right = entries.indexRight[node];
+		int factor = height(left) - height(right);
+
+		if (factor > 1) {
+			if (height(entries.indexLeft[left]) < height(entries.indexRight[left])) {
+				entries.indexLeft[node] = rotateLeft(left);
+			}
+
+			return rotateRight(node);
+		}
+
+		if (factor < -1) {
+			if (height(entries.indexRight[right]) < height(entries.indexLeft[right])) {
+				entries.indexRight[node] = rotateRight(right);
+			}
+
+			return rotateLeft(node);
+		}
+
+		return node;
+	}
+
+	private int rotateLeft(int node) {
+		int pivot = entries.indexRight[node];
+		entries.indexRight[node] = entries.indexLeft[pivot];
+		entries.indexLeft[pivot] = node;
+		update(node);
+		update(pivot);
+		return pivot;
+	}
+
+	private int rotateRight(int node) {
+		int pivot = entries.indexLeft[node];
+		entries.indexLeft[node] = entries.indexRight[pivot];
+		entries.indexRight[pivot] = node;
+		update(node);
+		update(pivot);
+		return pivot;
+	}
+
+	private void update(int node) {
+		entries.indexHeight[node] = (byte) (Math.max(height(entries.indexLeft[node]), height(entries.indexRight[node])) + 1);
+		entries.indexSize[node] = size(entries.indexLeft[node]) + size(entries.indexRight[node]) + 1;
+	}
+
+	private int height(int node) {
+		return node == NONE ? 0 : entries.indexHeight[node];
+	}
+
+	private int size(int node) {
+		return node == NONE ? 0 : entries.indexSize[node];
+	}
+}
@@ -0,0 +1,398 @@
+// QueueJournal.java
+package org.projectpersistence.queue;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Durable queue state so players keep their progress across proxy restarts.
+// Queue changes are appended to a compact binary journal by a single writer thread, in batches, so event
+// threads only enqueue. The writer mirrors the durable state and periodically compacts it into a snapshot,
+// which is memory-mapped on startup before the journal tail is replayed over it.
+class QueueJournal {
+
+	private static final int JOURNAL_MAGIC = 0x514A4E4C; // "QJNL"
+
+	private static final int SNAPSHOT_MAGIC = 0x51534E50; // "QSNP"
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final byte JOIN = 1;
+
+	private static final byte ADMIT = 2;
+
+	private static final byte LEAVE = 3;
+
+	private static final byte TIER = 4;
+
+	// type + uuid, followed by a type specific payload
+	private static final int RECORD_HEADER_BYTES = 1 + 8 + 8;
+
+	// join time + points since + seconds per point + front flag
+	private static final int JOIN_BYTES = 8 + 8 + 4 + 1;
+
+	// points since + seconds per point
+	private static final int TIER_BYTES = 8 + 4;
+
+	// uuid + join time + points since + seconds per point + front flag
+	private static final int SNAPSHOT_RECORD_BYTES = 8 + 8 + 8 + 8 + 4 + 1;
+
+	private static final long FLUSH_INTERVAL_MILLIS = 200;
+
+	private static final long COMPACT_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+	private static final int COMPACT_MIN_RECORDS = 10_000;
+
+	private final Path journalFile;
+
+	private final Path snapshotFile;
+
+	private final Logger logger;
+
+	private final ConcurrentLinkedQueue<Event> pending = new ConcurrentLinkedQueue<>();
+
+	// Mirror of the durable state, only touched by the writer thread after restore()
+	private final Map<UUID, Saved> state = new HashMap<>();
+
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+	// Null until start(), and stays null if the state could not be restored, which turns recording off
+	private volatile ScheduledExecutorService writer;
+
+	private FileChannel journal;
+
+	private int recordsSinceSnapshot;
+
+	private long lastCompaction;
+
+	QueueJournal(Path directory, Logger logger) {
+		this.journalFile = directory.resolve("journal.bin");
+		this.snapshotFile = directory.resolve("snapshot.bin");
+		this.logger = logger;
+	}
+
+	// Loads the last snapshot and replays the journal over it, then reopens the journal for appending.
+	// Must be called once, before start().
+	List<EntryRecord> restore() throws IOException {
+		Files.createDirectories(journalFile.getParent());
+		readSnapshot();
+		long validLength = replayJournal();
+
+		journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+		if (validLength == 0) {
+			resetJournal();
+		} else {
+			// Drop any torn record at the tail so new records follow the last complete one
+			journal.truncate(validLength);
+			journal.position(validLength);
+		}
+
+		lastCompaction = System.currentTimeMillis();
+
+		List<EntryRecord> restored = new ArrayList<>(state.size());
+
+		for (Map.Entry<UUID, Saved> saved: state.entrySet()) {
+			Saved value = saved.getValue();
+			restored.add(new EntryRecord(saved.getKey(), value.joinTime, value.pointsSince, value.secondsPerPoint, value.front));
+		}
+
+		return restored;
+	}
+
+	void start() {
+		if (journal == null) return;
+
+		writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "Queue Journal");
+			thread.setDaemon(true);
+			return thread;
+		});
+		writer.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	void join(EntryRecord entry) {
+		if (writer == null) return;
+
+		pending.add(new Event(JOIN, entry.playerId, entry.joinTime, entry.pointsSince, entry.secondsPerPoint, entry.front));
+	}
+
+	void admit(UUID playerId) {
+		if (writer == null) return;
+
+		pending.add(new Event(ADMIT, playerId, 0, 0, 0, false));
+	}
+
+	void leave(UUID playerId) {
+		if (writer == null) return;
+
+		pending.add(new Event(LEAVE, playerId, 0, 0, 0, false));
+	}
+
+	void tier(UUID playerId, long pointsSince, int secondsPerPoint) {
+		if (writer == null) return;
+
+		pending.add(new Event(TIER, playerId, 0, pointsSince, secondsPerPoint, false));
+	}
+
+	// Writes out anything still pending and leaves a fresh snapshot behind
+	void close() {
+		if (writer == null) return;
+
+		writer.shutdown();
+
+		try {
+			writer.awaitTermination(5, TimeUnit.SECONDS);
+			flush();
+			compact();
+			journal.close();
+		} catch (IOException e) {
+			logger.error("Failed to write queue state on shutdown", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void flush() {
+		try {
+			if (pending.isEmpty()) {
+				if (recordsSinceSnapshot > 0 && System.currentTimeMillis() - lastCompaction >= COMPACT_INTERVAL_MILLIS) {
+					compact();
+				}
+
+				return;
+			}
+
+			Event event;
+
+			while ((event = pending.poll()) != null) {
+				if (buffer.remaining() < RECORD_HEADER_BYTES + JOIN_BYTES) {
+					writeBuffer(journal);
+				}
+
+				encode(event);
+				apply(event);
+				recordsSinceSnapshot++;
+			}
+
+			writeBuffer(journal);
+			journal.force(false);
+
+			if (recordsSinceSnapshot >= Math.max(COMPACT_MIN_RECORDS, state.size() * 2)) {
+				compact();
+			}
+		} catch (IOException e) {
+			logger.error("Failed to write queue journal", e);
+		}
+	}
+
+	private void encode(Event event) {
+		buffer.put(event.type);
+		buffer.putLong(event.playerId.getMostSignificantBits());
+		buffer.putLong(event.playerId.getLeastSignificantBits());
+
+		if (event.type == JOIN) {
+			buffer.putLong(event.joinTime);
+			buffer.putLong(event.pointsSince);
+			buffer.putInt(event.secondsPerPoint);
+			buffer.put((byte)(event.front ? 1 : 0));
+		} else if (event.type == TIER) {
+			buffer.putLong(event.pointsSince);
+			buffer.putInt(event.secondsPerPoint);
+		}
+	}
+
+	private void apply(Event event) {
+		switch (event.type) {
+			case JOIN:
+				state.put(event.playerId, new Saved(event.joinTime, event.pointsSince, event.secondsPerPoint, event.front));
+				break;
+			case ADMIT:
+			case LEAVE:
+				state.remove(event.playerId);
+				break;
+			case TIER:
+				Saved saved = state.get(event.playerId);
+
+				if (saved != null) {
+					saved.pointsSince = event.pointsSince;
+					saved.secondsPerPoint = event.secondsPerPoint;
+				}
+
+				break;
+			default:
+				break;
+		}
+	}
+
+	private void readSnapshot() throws IOException {
+		if (!Files.exists(snapshotFile)) return;
+
+		try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			int version = map.remaining() < 12 || map.getInt() != SNAPSHOT_MAGIC ? -1 : map.getInt();
+
+			if (version != FORMAT_VERSION) {
+				logger.warn("Ignoring unreadable queue snapshot " + snapshotFile);
+				return;
+			}
+
+			int count = map.getInt();
+
+			for (int i = 0; i < count && map.remaining() >= SNAPSHOT_RECORD_BYTES; i++) {
+				UUID playerId = new UUID(map.getLong(), map.getLong());
+				long joinTime = map.getLong();
+				long pointsSince = map.getLong();
+				int secondsPerPoint = map.getInt();
+				boolean front = map.get() != 0;
+				state.put(playerId, new Saved(joinTime, pointsSince, secondsPerPoint, front));
+			}
+		}
+	}
+
+	// Returns the length of the journal up to its last complete record, or 0 if it has to be started over.
+	// The journal is kept small by compaction, so it is read into memory rather than mapped, which would
+	// stop it being truncated afterwards on some platforms.
+	private long replayJournal() throws IOException {
+		if (!Files.exists(journalFile)) return 0;
+
+		ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(journalFile));
+
+		int version = data.remaining() < 8 || data.getInt() != JOURNAL_MAGIC ? -1 : data.getInt();
+
+		if (version != FORMAT_VERSION) {
+			logger.warn("Ignoring unreadable queue journal " + journalFile);
+			return 0;
+		}
+
+		long validLength = data.position();
+
+		// A crash can leave a partially written record at the tail, which is dropped
+		while (data.remaining() >= RECORD_HEADER_BYTES) {
+			byte type = data.get();
+			UUID playerId = new UUID(data.getLong(), data.getLong());
+
+			if (type == JOIN) {
+				if (data.remaining() < JOIN_BYTES) break;
+				apply(new Event(JOIN, playerId, data.getLong(), data.getLong(), data.getInt(), data.get() != 0));
+			} else if (type == TIER) {
+				if (data.remaining() < TIER_BYTES) break;
+				apply(new Event(TIER, playerId, 0, data.getLong(), data.getInt(), false));
+			} else if (type == ADMIT || type == LEAVE) {
+				apply(new Event(type, playerId, 0, 0, 0, false));
+			} else {
+				logger.warn("Queue journal is corrupt past offset " + validLength);
+				break;
+			}
+
+			validLength = data.position();
+		}
+
+		return validLength;
+	}
+
+	// Writes the mirrored state to a new snapshot and truncates the journal.
+	// Replaying a journal over a newer snapshot is harmless, so a crash between the two steps loses nothing.
+	private void compact() throws IOException {
+		Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+			StandardOpenOption.TRUNCATE_EXISTING)) {
+			buffer.clear();
+			buffer.putInt(SNAPSHOT_MAGIC);
+			buffer.putInt(FORMAT_VERSION);
+			buffer.putInt(state.size());
+
+			for (Map.Entry<UUID, Saved> saved: state.entrySet()) {
+				if (buffer.remaining() < SNAPSHOT_RECORD_BYTES) {
+					writeBuffer(channel);
+				}
+
+				Saved value = saved.getValue();
+				buffer.putLong(saved.getKey().getMostSignificantBits());
+				buffer.putLong(saved.getKey().getLeastSignificantBits());
+				buffer.putLong(value.joinTime);
+				buffer.putLong(value.pointsSince);
+				buffer.putInt(value.secondsPerPoint);
+				buffer.put((byte)(value.front ? 1 : 0));
+			}
+
+			writeBuffer(channel);
+			channel.force(true);
+		}
+
+		Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		resetJournal();
+
+		recordsSinceSnapshot = 0;
+		lastCompaction = System.currentTimeMillis();
+	}
+
+	private void resetJournal() throws IOException {
+		journal.truncate(0);
+		journal.position(0);
+		buffer.putInt(JOURNAL_MAGIC);
+		buffer.putInt(FORMAT_VERSION);
+		writeBuffer(journal);
+		journal.force(false);
+	}
+
+	private void writeBuffer(FileChannel channel) throws IOException {
+		buffer.flip();
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+
+		buffer.clear();
+	}
+
+	private static final class Event {
+		final byte type;
+		final UUID playerId;
+		final long joinTime;
+		final long pointsSince;
+		final int secondsPerPoint;
+		final boolean front;
+
+		Event(byte type, UUID playerId, long joinTime, long pointsSince, int secondsPerPoint, boolean front) {
+			this.type = type;
+			this.playerId = playerId;
+			this.joinTime = joinTime;
+			this.pointsSince = pointsSince;
+			this.secondsPerPoint = secondsPerPoint;
+			this.front = front;
+		}
+	}
+
+	private static final class Saved {
+		final long joinTime;
+		long pointsSince;
+		int secondsPerPoint;
+		final boolean front;
+
+		Saved(long joinTime, long pointsSince, int secondsPerPoint, boolean front) {
+			this.joinTime = joinTime;
+			this.pointsSince = pointsSince;
+			this.secondsPerPoint = secondsPerPoint;
+			this.front = front;
+		}
+	}
+}
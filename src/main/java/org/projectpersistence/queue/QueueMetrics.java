@@ -0,0 +1,278 @@
+// QueueMetrics.java
+package org.projectpersistence.queue;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.ObjectName;
+
+// Instrumentation for the queue: tick durations, queue length and wait times per point tier, admission rate
+// and connect outcomes. Recorded from the engine and connect callbacks without allocating, and read from JMX
+// or the Prometheus endpoint on other threads.
+// Queue length and wait times are kept per seconds-per-point rate, which is what an entry carries, and are
+// named after the configured tier with that rate when they are read. Front-of-queue entries are kept apart.
+// Each queue target has its own instance, registered under its own name and labelled with the target.
+class QueueMetrics implements QueueMetricsMXBean {
+
+	static final String OBJECT_NAME = "org.projectpersistence.queue:type=QueueMetrics";
+
+	// Rate key used for front-of-queue entries, which never share a configured rate's label
+	private static final int FRONT = 0;
+
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+	// The queue target these metrics are for
+	final String target;
+
+	final LatencyHistogram processQueueNanos = new LatencyHistogram();
+
+	final LatencyHistogram accumulatePointsNanos = new LatencyHistogram();
+
+	final LatencyHistogram checkMainServerNanos = new LatencyHistogram();
+
+	private final Map<Integer, AtomicInteger> queueLength = new ConcurrentHashMap<>();
+
+	private final Map<Integer, LatencyHistogram> waitMillis = new ConcurrentHashMap<>();
+
+	private final AtomicLong admissions = new AtomicLong();
+
+	private final AtomicLong connectSuccesses = new AtomicLong();
+
+	private final AtomicLong connectFailures = new AtomicLong();
+
+	// Admissions per second over the last minute, in a ring indexed by the second they happened in
+	private final AtomicLongArray admissionSeconds = new AtomicLongArray(60);
+
+	private final AtomicLongArray admissionCounts = new AtomicLongArray(60);
+
+	private final Clock clock;
+
+	// Seconds per point -> tier permission, swapped whenever the point configuration is reloaded
+	private volatile Map<Integer, String> tierNames = Map.of();
+
+	QueueMetrics(Clock clock, String target) {
+		this.clock = clock;
+		this.target = target;
+	}
+
+	String objectName() {
+		return OBJECT_NAME + ",target=" + ObjectName.quote(target);
+	}
+
+	void setTiers(Map<String, Integer> pointTiers, int defaultSeconds) {
+		Map<Integer, String> names = new ConcurrentHashMap<>();
+		names.put(defaultSeconds, "default");
+
+		// Tiers are in priority order; when two share a rate the first one names it
+		for (Map.Entry<String, Integer> tier: pointTiers.entrySet()) {
+			names.putIfAbsent(tier.getValue(), tier.getKey());
+		}
+
+		tierNames = names;
+	}
+
+	void joined(boolean front, int secondsPerPoint) {
+		queueLength.computeIfAbsent(rateKey(front, secondsPerPoint), k -> new AtomicInteger()).incrementAndGet();
+	}
+
+	void left(boolean front, int secondsPerPoint) {
+		AtomicInteger length = queueLength.get(rateKey(front, secondsPerPoint));
+
+		if (length != null) {
+			length.decrementAndGet();
+		}
+	}
+
+	void admitted(boolean front, int secondsPerPoint, long joinTime, long now) {
+		admissions.incrementAndGet();
+		waitMillis.computeIfAbsent(rateKey(front, secondsPerPoint), k -> new LatencyHistogram()).record(now - joinTime);
+
+		long second = now / 1000;
+		int slot = (int)(second % admissionSeconds.length());
+
+		if (admissionSeconds.get(slot) != second) {
+			admissionSeconds.set(slot, second);
+			admissionCounts.set(slot, 0);
+		}
+
+		admissionCounts.incrementAndGet(slot);
+	}
+
+	void connected(boolean success) {
+		if (success) {
+			connectSuccesses.incrementAndGet();
+		} else {
+			connectFailures.incrementAndGet();
+		}
+	}
+
+	private static int rateKey(boolean front, int secondsPerPoint) {
+		return front ? FRONT : secondsPerPoint;
+	}
+
+	private String tierName(int rateKey) {
+		if (rateKey == FRONT) return "front";
+
+		String name = tierNames.get(rateKey);
+		return name != null ? name : rateKey + "s";
+	}
+
+	@Override
+	public int getQueueLength() {
+		int total = 0;
+
+		for (AtomicInteger length: queueLength.values()) {
+			total += length.get();
+		}
+
+		return total;
+	}
+
+	@Override
+	public Map<String, Integer> getQueueLengthByTier() {
+		Map<String, Integer> byTier = new TreeMap<>();
+
+		for (Map.Entry<Integer, AtomicInteger> length: queueLength.entrySet()) {
+			byTier.merge(tierName(length.getKey()), length.getValue().get(), Integer::sum);
+		}
+
+		return byTier;
+	}
+
+	@Override
+	public long getAdmissions() {
+		return admissions.get();
+	}
+
+	@Override
+	public double getAdmissionsPerSecond() {
+		long now = clock.millis() / 1000;
+		long total = 0;
+
+		// The current second is still filling, so the window is the 60 seconds before it
+		for (int slot = 0; slot < admissionSeconds.length(); slot++) {
+			long second = admissionSeconds.get(slot);
+
+			if (second < now && now - second <= admissionSeconds.length()) {
+				total += admissionCounts.get(slot);
+			}
+		}
+
+		return total / (double) admissionSeconds.length();
+	}
+
+	@Override
+	public long getConnectSuccesses() {
+		return connectSuccesses.get();
+	}
+
+	@Override
+	public long getConnectFailures() {
+		return connectFailures.get();
+	}
+
+	@Override
+	public Map<String, Double> getTickMillis() {
+		Map<String, Double> ticks = new LinkedHashMap<>();
+		quantiles(ticks, "processQueue", processQueueNanos, 1e-6);
+		quantiles(ticks, "accumulatePoints", accumulatePointsNanos, 1e-6);
+		quantiles(ticks, "checkMainServerStatus", checkMainServerNanos, 1e-6);
+		return ticks;
+	}
+
+	@Override
+	public Map<String, Double> getWaitSeconds() {
+		Map<String, Double> waits = new LinkedHashMap<>();
+
+		for (Map.Entry<Integer, LatencyHistogram> wait: new TreeMap<>(waitMillis).entrySet()) {
+			quantiles(waits, tierName(wait.getKey()), wait.getValue(), 1e-3);
+		}
+
+		return waits;
+	}
+
+	private static void quantiles(Map<String, Double> into, String name, LatencyHistogram histogram, double scale) {
+		into.put(name + ".p50", histogram.quantile(0.5) * scale);
+		into.put(name + ".p90", histogram.quantile(0.9) * scale);
+		into.put(name + ".p99", histogram.quantile(0.99) * scale);
+		into.put(name + ".max", histogram.max() * scale);
+		into.put(name + ".count", (double) histogram.count());
+	}
+
+	// Prometheus text exposition format, version 0.0.4, with every series labelled by its target
+	static String prometheus(Collection<QueueMetrics> targets) {
+		StringBuilder out = new StringBuilder(4096);
+
+		out.append("# HELP queue_length Players in the queue, by point tier\n");
+		out.append("# TYPE queue_length gauge\n");
+
+		for (QueueMetrics metrics: targets) {
+			for (Map.Entry<String, Integer> length: metrics.getQueueLengthByTier().entrySet()) {
+				out.append("queue_length{").append(metrics.label()).append(",tier=\"").append(escape(length.getKey())).append("\"} ")
+					.append(length.getValue()).append('\n');
+			}
+		}
+
+		out.append("# HELP queue_admissions_total Players admitted from the queue to the main server\n");
+		out.append("# TYPE queue_admissions_total counter\n");
+
+		for (QueueMetrics metrics: targets) {
+			out.append("queue_admissions_total{").append(metrics.label()).append("} ").append(metrics.admissions.get()).append('\n');
+		}
+
+		out.append("# HELP queue_connects_total Connection attempts to the main server, by outcome\n");
+		out.append("# TYPE queue_connects_total counter\n");
+
+		for (QueueMetrics metrics: targets) {
+			out.append("queue_connects_total{").append(metrics.label()).append(",result=\"success\"} ").append(metrics.connectSuccesses.get()).append('\n');
+			out.append("queue_connects_total{").append(metrics.label()).append(",result=\"failure\"} ").append(metrics.connectFailures.get()).append('\n');
+		}
+
+		out.append("# HELP queue_tick_duration_seconds Time taken by the queue's periodic tasks\n");
+		out.append("# TYPE queue_tick_duration_seconds summary\n");
+
+		for (QueueMetrics metrics: targets) {
+			summary(out, "queue_tick_duration_seconds", metrics.label(), "tick", "process_queue", metrics.processQueueNanos, 1e-9);
+			summary(out, "queue_tick_duration_seconds", metrics.label(), "tick", "accumulate_points", metrics.accumulatePointsNanos, 1e-9);
+			summary(out, "queue_tick_duration_seconds", metrics.label(), "tick", "check_main_server_status", metrics.checkMainServerNanos, 1e-9);
+		}
+
+		out.append("# HELP queue_wait_seconds Time admitted players spent in the queue, by point tier\n");
+		out.append("# TYPE queue_wait_seconds summary\n");
+
+		for (QueueMetrics metrics: targets) {
+			for (Map.Entry<Integer, LatencyHistogram> wait: new TreeMap<>(metrics.waitMillis).entrySet()) {
+				summary(out, "queue_wait_seconds", metrics.label(), "tier", metrics.tierName(wait.getKey()), wait.getValue(), 1e-3);
+			}
+		}
+
+		return out.toString();
+	}
+
+	private String label() {
+		return "target=\"" + escape(target) + "\"";
+	}
+
+	private static void summary(StringBuilder out, String metric, String targetLabel, String label, String value, LatencyHistogram histogram,
+		double scale) {
+		String labels = targetLabel + "," + label + "=\"" + escape(value) + "\"";
+
+		for (double quantile: QUANTILES) {
+			out.append(metric).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+				.append(histogram.quantile(quantile) * scale).append('\n');
+		}
+
+		out.append(metric).append("_sum{").append(labels).append("} ").append(histogram.sum() * scale).append('\n');
+		out.append(metric).append("_count{").append(labels).append("} ").append(histogram.count()).append('\n');
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
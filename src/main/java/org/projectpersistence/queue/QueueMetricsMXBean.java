@@ -0,0 +1,27 @@
+// QueueMetricsMXBean.java
+package org.projectpersistence.queue;
+
+import java.util.Map;
+
+// Queue metrics as seen over JMX, under org.projectpersistence.queue:type=QueueMetrics,target="<target>".
+// Durations are in milliseconds, and wait times in seconds; quantile maps are keyed "<name>.p50", ".p90",
+// ".p99", ".max" and ".count".
+public interface QueueMetricsMXBean {
+
+	int getQueueLength();
+
+	Map<String, Integer> getQueueLengthByTier();
+
+	long getAdmissions();
+
+	// Averaged over the last minute
+	double getAdmissionsPerSecond();
+
+	long getConnectSuccesses();
+
+	long getConnectFailures();
+
+	Map<String, Double> getTickMillis();
+
+	Map<String, Double> getWaitSeconds();
+}
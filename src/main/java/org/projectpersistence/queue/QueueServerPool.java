@@ -0,0 +1,171 @@
+// QueueServerPool.java
+package org.projectpersistence.queue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+// The queue servers a target's players wait on, so a launch's idle connections are spread over several limbo
+// servers instead of one. Queue membership and ordering don't depend on which server a player waits on.
+// Placement is either least-loaded, counting players still being sent to a server so a burst of logins doesn't
+// all land on the same one, or rendezvous hashing, which keeps a player on the same server across reconnects
+// and only moves the players of a server that goes away. Servers are marked down and up again after
+// consecutive failed or successful pings, like the main server, and down servers are left out of placement.
+// Not thread safe; it is owned by the queue engine thread.
+class QueueServerPool {
+
+	private List<String> names = List.of();
+
+	private boolean hashPlacement;
+
+	private int upThreshold = 2;
+
+	private int downThreshold = 3;
+
+	private final Map<String, Shard> shards = new HashMap<>();
+
+	// Server each player was last placed on, until their connect there completes
+	private final Map<UUID, String> placements = new HashMap<>();
+
+	void configure(List<String> names, boolean hashPlacement, int upThreshold, int downThreshold) {
+		this.names = names;
+		this.hashPlacement = hashPlacement;
+		this.upThreshold = Math.max(1, upThreshold);
+		this.downThreshold = Math.max(1, downThreshold);
+
+		// Servers that stay in the pool keep their state
+		shards.keySet().retainAll(names);
+		placements.values().retainAll(names);
+
+		for (String name: names) {
+			shards.computeIfAbsent(name, Shard::new);
+		}
+	}
+
+	List<String> names() {
+		return names;
+	}
+
+	int size() {
+		return names.size();
+	}
+
+	boolean contains(String name) {
+		return shards.containsKey(name);
+	}
+
+	boolean isUp(String name) {
+		Shard shard = shards.get(name);
+		return shard != null && shard.up;
+	}
+
+	// The server to send the player to among those that are up and available, or null if there is none.
+	// load gives a server's current player count; players placed but not yet settled are added to it
+	String place(UUID playerId, ToIntFunction<String> load, Predicate<String> available) {
+		String best = null;
+		long bestScore = 0;
+
+		for (String name: names) {
+			Shard shard = shards.get(name);
+
+			if (!shard.up || !available.test(name)) continue;
+
+			// Lowest load first, or highest hash first
+			long score = hashPlacement ? -weight(playerId, shard.seed) : load.applyAsInt(name) + shard.placing;
+
+			if (best == null || score < bestScore) {
+				best = name;
+				bestScore = score;
+			}
+		}
+
+		if (best != null) {
+			settled(playerId);
+			placements.put(playerId, best);
+			shards.get(best).placing++;
+		}
+
+		return best;
+	}
+
+	// The player's connect to the server place() gave them completed or was abandoned, whether or not it succeeded
+	void settled(UUID playerId) {
+		String name = placements.remove(playerId);
+
+		if (name == null) return;
+
+		Shard shard = shards.get(name);
+
+		if (shard != null && shard.placing > 0) {
+			shard.placing--;
+		}
+	}
+
+	// Returns true if this ping brought the server back up
+	boolean succeeded(String name) {
+		Shard shard = shards.get(name);
+
+		if (shard == null) return false;
+
+		shard.failures = 0;
+
+		if (shard.up) return false;
+
+		if (++shard.successes < upThreshold) return false;
+
+		shard.up = true;
+		shard.successes = 0;
+		return true;
+	}
+
+	// Returns true if this ping took the server down
+	boolean failed(String name) {
+		Shard shard = shards.get(name);
+
+		if (shard == null) return false;
+
+		shard.successes = 0;
+
+		if (!shard.up) return false;
+
+		if (++shard.failures < downThreshold) return false;
+
+		shard.up = false;
+		shard.failures = 0;
+		shard.placing = 0;
+		placements.values().removeIf(name::equals);
+		return true;
+	}
+
+	private static long weight(UUID playerId, long seed) {
+		// Kept non-negative so negating it orders the same way
+		return mix(playerId.getMostSignificantBits() ^ mix(playerId.getLeastSignificantBits() ^ seed)) >>> 1;
+	}
+
+	// Murmur3's 64-bit finalizer, as in PriorityList
+	private static long mix(long bits) {
+		bits ^= bits >>> 33;
+		bits *= 0xff51afd7ed558ccdL;
+		bits ^= bits >>> 33;
+		bits *= 0xc4ceb9fe1a85ec53L;
+		bits ^= bits >>> 33;
+		return bits;
+	}
+
+	private static final class Shard {
+		boolean up = true;
+		int successes;
+		int failures;
+		// Players sent here whose connect hasn't completed yet
+		int placing;
+		// Hashed from the server's name, so a player's ranking of the servers is the same on every proxy
+		final long seed;
+
+		Shard(String name) {
+			this.seed = mix(name.hashCode());
+		}
+	}
+}
@@ -0,0 +1,32 @@
+// QueueSnapshot.java
+package org.projectpersistence.queue;
+
+// Immutable view of the queue published by the engine after each batch of commands.
+// The version only moves forward, so readers can tell whether anything changed since they last looked.
+final class QueueSnapshot {
+
+	static final QueueSnapshot EMPTY = new QueueSnapshot(0, 0, false, true);
+
+	final long version;
+
+	// Players tracked by the queue, including any whose connection to the main server is in flight
+	final int size;
+
+	final boolean paused;
+
+	final boolean mainServerOnline;
+
+	QueueSnapshot(long version, int size, boolean paused, boolean mainServerOnline) {
+		this.version = version;
+		this.size = size;
+		this.paused = paused;
+		this.mainServerOnline = mainServerOnline;
+	}
+
+	// Returns this snapshot when nothing changed, so an idle queue doesn't allocate a new one per batch
+	QueueSnapshot next(int size, boolean paused, boolean mainServerOnline) {
+		if (size == this.size && paused == this.paused && mainServerOnline == this.mainServerOnline) return this;
+
+		return new QueueSnapshot(version + 1, size, paused, mainServerOnline);
+	}
+}
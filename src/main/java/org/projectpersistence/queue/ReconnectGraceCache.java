@@ -0,0 +1,252 @@
+// ReconnectGraceCache.java
+package org.projectpersistence.queue;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+// Holds the queue progress of players who disconnected, so reconnecting within the grace window
+// restores their original join time and tier.
+// Entries live in primitive parallel arrays used as a ring in parking order, which is also expiry order,
+// and are found through an open-addressing table of ring slots keyed by UUID. Taken entries leave a dead
+// ring slot behind that is reclaimed when the head of the ring reaches it.
+// Not thread safe; it is owned by the queue engine thread once the engine has started.
+class ReconnectGraceCache {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private static final byte LIVE = 1;
+
+	private final Consumer<UUID> onExpire;
+
+	private long ttlMillis;
+
+	private int maxEntries;
+
+	// Ring of parked entries, oldest at head
+	private long[] mostBits;
+
+	private long[] leastBits;
+
+	private long[] joinTimes;
+
+	private long[] pointsSince;
+
+	private long[] parkedAt;
+
+	private int[] rates;
+
+	private byte[] flags;
+
+	private int head;
+
+	private int used;
+
+	private int live;
+
+	// Open-addressing table of ring slot + 1 (0 marks an empty bucket), always at least twice the ring capacity
+	private int[] table;
+
+	ReconnectGraceCache(long ttlMillis, int maxEntries, Consumer<UUID> onExpire) {
+		this.ttlMillis = ttlMillis;
+		this.maxEntries = maxEntries;
+		this.onExpire = onExpire;
+		allocate(Math.min(INITIAL_CAPACITY, Math.max(1, maxEntries)));
+	}
+
+	void configure(long ttlMillis, int maxEntries, long now) {
+		this.ttlMillis = ttlMillis;
+		this.maxEntries = maxEntries;
+
+		while (used > 0 && live > maxEntries) {
+			evictHead();
+		}
+
+		expire(now);
+	}
+
+	void park(UUID playerId, long joinTime, long pointsSince, int secondsPerPoint, long now) {
+		if (maxEntries <= 0) {
+			onExpire.accept(playerId);
+			return;
+		}
+
+		expire(now);
+		remove(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+
+		// Full, make room by dropping the oldest entries
+		while (used > 0 && live >= maxEntries) {
+			evictHead();
+		}
+
+		if (used == mostBits.length) {
+			// Out of ring slots, grow towards the limit or reclaim the dead slots
+			allocate(mostBits.length < maxEntries ? Math.min(mostBits.length * 2, maxEntries) : mostBits.length);
+		}
+
+		int slot = (head + used) % mostBits.length;
+		mostBits[slot] = playerId.getMostSignificantBits();
+		leastBits[slot] = playerId.getLeastSignificantBits();
+		joinTimes[slot] = joinTime;
+		this.pointsSince[slot] = pointsSince;
+		parkedAt[slot] = now;
+		rates[slot] = secondsPerPoint;
+		flags[slot] = LIVE;
+		used++;
+		live++;
+		insert(slot);
+	}
+
+	// Returns the player's parked entry with its original join time and tier, or null if there is none
+	EntryRecord take(UUID playerId, long now) {
+		expire(now);
+
+		int slot = remove(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+
+		if (slot == -1) return null;
+
+		return new EntryRecord(playerId, joinTimes[slot], pointsSince[slot], rates[slot], false);
+	}
+
+	boolean contains(UUID playerId) {
+		long most = playerId.getMostSignificantBits();
+		long least = playerId.getLeastSignificantBits();
+		int mask = table.length - 1;
+		int bucket = hash(most, least) & mask;
+
+		while (table[bucket] != 0) {
+			int slot = table[bucket] - 1;
+
+			if (mostBits[slot] == most && leastBits[slot] == least) return true;
+
+			bucket = (bucket + 1) & mask;
+		}
+
+		return false;
+	}
+
+	// Drops entries whose grace window has passed
+	void expire(long now) {
+		while (used > 0 && (flags[head] != LIVE || now - parkedAt[head] >= ttlMillis)) {
+			evictHead();
+		}
+	}
+
+	int size() {
+		return live;
+	}
+
+	private void evictHead() {
+		if (flags[head] == LIVE) {
+			long most = mostBits[head];
+			long least = leastBits[head];
+			remove(most, least);
+			onExpire.accept(new UUID(most, least));
+		}
+
+		head = (head + 1) % mostBits.length;
+		used--;
+	}
+
+	// Unlinks a live entry from the table and marks its ring slot dead, returning the slot or -1
+	private int remove(long most, long least) {
+		int mask = table.length - 1;
+		int bucket = hash(most, least) & mask;
+
+		while (table[bucket] != 0) {
+			int slot = table[bucket] - 1;
+
+			if (mostBits[slot] == most && leastBits[slot] == least) {
+				table[bucket] = 0;
+				flags[slot] = 0;
+				live--;
+				shiftBack(bucket);
+				return slot;
+			}
+
+			bucket = (bucket + 1) & mask;
+		}
+
+		return -1;
+	}
+
+	// Backward-shift deletion keeps probe chains intact without tombstones
+	private void shiftBack(int gap) {
+		int mask = table.length - 1;
+		int bucket = (gap + 1) & mask;
+
+		while (table[bucket] != 0) {
+			int slot = table[bucket] - 1;
+			int home = hash(mostBits[slot], leastBits[slot]) & mask;
+
+			// Move the entry into the gap if its home bucket does not lie between the gap and its current bucket
+			if (((bucket - home) & mask) >= ((bucket - gap) & mask)) {
+				table[gap] = table[bucket];
+				table[bucket] = 0;
+				gap = bucket;
+			}
+
+			bucket = (bucket + 1) & mask;
+		}
+	}
+
+	private void insert(int slot) {
+		int mask = table.length - 1;
+		int bucket = hash(mostBits[slot], leastBits[slot]) & mask;
+
+		while (table[bucket] != 0) {
+			bucket = (bucket + 1) & mask;
+		}
+
+		table[bucket] = slot + 1;
+	}
+
+	// Grows the ring, compacting it so the head starts at slot 0, and rebuilds the table
+	private void allocate(int capacity) {
+		long[] newMost = new long[capacity];
+		long[] newLeast = new long[capacity];
+		long[] newJoin = new long[capacity];
+		long[] newSince = new long[capacity];
+		long[] newParked = new long[capacity];
+		int[] newRate = new int[capacity];
+		byte[] newFlags = new byte[capacity];
+		int count = 0;
+
+		for (int i = 0; i < used; i++) {
+			int slot = (head + i) % mostBits.length;
+
+			if (flags[slot] != LIVE) continue;
+
+			newMost[count] = mostBits[slot];
+			newLeast[count] = leastBits[slot];
+			newJoin[count] = joinTimes[slot];
+			newSince[count] = pointsSince[slot];
+			newParked[count] = parkedAt[slot];
+			newRate[count] = rates[slot];
+			newFlags[count] = LIVE;
+			count++;
+		}
+
+		mostBits = newMost;
+		leastBits = newLeast;
+		joinTimes = newJoin;
+		pointsSince = newSince;
+		parkedAt = newParked;
+		rates = newRate;
+		flags = newFlags;
+		head = 0;
+		used = count;
+		live = count;
+
+		table = new int[Integer.highestOneBit(Math.max(capacity, 2) - 1) << 2];
+
+		for (int slot = 0; slot < count; slot++) {
+			insert(slot);
+		}
+	}
+
+	private static int hash(long most, long least) {
+		long bits = most ^ least;
+		int hash = (int)(bits ^ (bits >>> 32));
+		return hash ^ (hash >>> 16);
+	}
+}
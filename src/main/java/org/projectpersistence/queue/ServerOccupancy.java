@@ -0,0 +1,114 @@
+// ServerOccupancy.java
+package org.projectpersistence.queue;
+
+import com.velocitypowered.api.proxy.Player;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Player counts per backend server, kept up to date from connection events so capacity checks are a single
+// atomic read instead of building RegisteredServer.getPlayersConnected() every time.
+// Each player is remembered against the server they are counted on, which makes repeated events for the same
+// move harmless, and reconcile() corrects any drift against the real player lists.
+// Updates are serialized so every count always matches countedOn; reads are a lock-free atomic read.
+class ServerOccupancy {
+
+	private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+	private final Map<UUID, String> countedOn = new ConcurrentHashMap<>();
+
+	// Players the last reconcile found counted on a server that didn't list them, and on which server
+	private Map<UUID, String> unlisted = new HashMap<>();
+
+	int get(String serverName) {
+		AtomicInteger count = counts.get(serverName);
+		return count == null ? 0 : count.get();
+	}
+
+	// Every server a player has been counted on
+	Set<String> serverNames() {
+		return new HashSet<>(counts.keySet());
+	}
+
+	// Records that a player is now on the given server, returning the server they moved off (or null)
+	synchronized String moved(UUID playerId, String serverName) {
+		String previous = countedOn.put(playerId, serverName);
+
+		if (serverName.equals(previous)) return null;
+
+		if (previous != null) {
+			counter(previous).decrementAndGet();
+		}
+
+		counter(serverName).incrementAndGet();
+		return previous;
+	}
+
+	// Records that a player left the proxy, returning the server they were counted on (or null)
+	synchronized String left(UUID playerId) {
+		String previous = countedOn.remove(playerId);
+
+		if (previous != null) {
+			counter(previous).decrementAndGet();
+		}
+
+		return previous;
+	}
+
+	// Brings the counts back in line with the players actually connected to the given servers, by server name.
+	// Players listed on a server are counted there if they are still online. A player counted on one of these
+	// servers but not listed on it is only dropped when the previous pass missed them there too, since a player
+	// whose connect event has fired may not be listed yet. Every count is then recomputed from countedOn.
+	synchronized void reconcile(Map<String, Collection<Player>> connected) {
+		Set<UUID> listed = new HashSet<>();
+
+		for (Map.Entry<String, Collection<Player>> server: connected.entrySet()) {
+			for (Player player: server.getValue()) {
+				listed.add(player.getUniqueId());
+
+				// A player who left after the list was taken has already been removed
+				if (player.isActive()) {
+					countedOn.put(player.getUniqueId(), server.getKey());
+				}
+			}
+		}
+
+		Map<UUID, String> missing = new HashMap<>();
+
+		for (Map.Entry<UUID, String> entry: countedOn.entrySet()) {
+			if (!connected.containsKey(entry.getValue()) || listed.contains(entry.getKey())) continue;
+
+			if (entry.getValue().equals(unlisted.get(entry.getKey()))) {
+				countedOn.remove(entry.getKey());
+			} else {
+				missing.put(entry.getKey(), entry.getValue());
+			}
+		}
+
+		unlisted = missing;
+
+		Map<String, Integer> recount = new HashMap<>();
+
+		for (String serverName: countedOn.values()) {
+			recount.merge(serverName, 1, Integer::sum);
+		}
+
+		for (String serverName: recount.keySet()) {
+			counter(serverName);
+		}
+
+		for (Map.Entry<String, AtomicInteger> count: counts.entrySet()) {
+			count.getValue().set(recount.getOrDefault(count.getKey(), 0));
+		}
+	}
+
+	private AtomicInteger counter(String serverName) {
+		return counts.computeIfAbsent(serverName, name -> new AtomicInteger());
+	}
+}
@@ -0,0 +1,60 @@
+// SlotIdleTracker.java
+package org.projectpersistence.queue;
+
+// Measures how long main server slots sit empty while players are waiting.
+// A slot freed while the queue is non-empty is remembered, and the next admission that reserves a slot
+// closes the oldest one, so the totals are the player-time lost between a departure and its replacement.
+class SlotIdleTracker {
+
+	private final long[] freedAt = new long[1024];
+
+	private int head;
+
+	private int count;
+
+	private long totalIdleMillis;
+
+	private long maxIdleMillis;
+
+	private long fills;
+
+	synchronized void slotFreed(long now) {
+		if (count == freedAt.length) {
+			// Far more open slots than admissions; forget the oldest rather than grow
+			head = (head + 1) % freedAt.length;
+			count--;
+		}
+
+		freedAt[(head + count) % freedAt.length] = now;
+		count++;
+	}
+
+	synchronized void slotFilled(long now) {
+		if (count == 0) return;
+
+		long idle = Math.max(0, now - freedAt[head]);
+		head = (head + 1) % freedAt.length;
+		count--;
+
+		totalIdleMillis += idle;
+		maxIdleMillis = Math.max(maxIdleMillis, idle);
+		fills++;
+	}
+
+	// Slots left open because the queue emptied out are not idle time anyone waited through
+	synchronized void queueEmptied() {
+		count = 0;
+	}
+
+	synchronized long fills() {
+		return fills;
+	}
+
+	synchronized long averageIdleMillis() {
+		return fills == 0 ? 0 : totalIdleMillis / fills;
+	}
+
+	synchronized long maxIdleMillis() {
+		return maxIdleMillis;
+	}
+}
@@ -0,0 +1,140 @@
+// UsernameIndex.java
+package org.projectpersistence.queue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Case-insensitive prefix index over the usernames of queued players, for tab completion.
+// A trie whose nodes keep their children sorted by character and count the names below them; nodes left
+// without any names are pruned on removal, so every branch leads to a name. A completion walks the prefix and
+// then collects names depth first until the limit is reached: O(prefix length + limit * name length), however
+// many players are queued or online. Names that differ only in case are suggested once.
+// Not thread safe; it is owned by the queue engine thread.
+class UsernameIndex {
+
+	private final Node root = new Node();
+
+	void add(String username) {
+		Node node = root;
+		node.names++;
+
+		for (int i = 0; i < username.length(); i++) {
+			node = node.childOrCreate(Character.toLowerCase(username.charAt(i)));
+			node.names++;
+		}
+
+		node.ending++;
+		node.username = username;
+	}
+
+	// Returns false if the name was not indexed
+	boolean remove(String username) {
+		Node node = root;
+
+		// Check the whole path first, so a missing name leaves the counts alone
+		for (int i = 0; i < username.length() && node != null; i++) {
+			node = node.child(Character.toLowerCase(username.charAt(i)));
+		}
+
+		if (node == null || node.ending == 0) return false;
+
+		node = root;
+		node.names--;
+
+		for (int i = 0; i < username.length(); i++) {
+			char key = Character.toLowerCase(username.charAt(i));
+			Node child = node.child(key);
+
+			if (--child.names == 0) {
+				node.removeChild(key);
+				return true;
+			}
+
+			node = child;
+		}
+
+		node.ending--;
+		return true;
+	}
+
+	int size() {
+		return root.names;
+	}
+
+	// Up to limit indexed names starting with the prefix, ignoring case, in alphabetical order
+	List<String> complete(String prefix, int limit) {
+		Node node = root;
+
+		for (int i = 0; i < prefix.length() && node != null; i++) {
+			node = node.child(Character.toLowerCase(prefix.charAt(i)));
+		}
+
+		if (node == null || limit <= 0) return List.of();
+
+		List<String> names = new ArrayList<>(Math.min(limit, node.names));
+		collect(node, names, limit);
+		return names;
+	}
+
+	private static void collect(Node node, List<String> names, int limit) {
+		if (node.ending > 0) {
+			names.add(node.username);
+		}
+
+		for (int i = 0; i < node.childCount && names.size() < limit; i++) {
+			collect(node.children[i], names, limit);
+		}
+	}
+
+	private static final class Node {
+		// Children sorted by key; usernames use few distinct characters, so these stay small
+		char[] keys = new char[0];
+		Node[] children = new Node[0];
+		int childCount;
+
+		// Names ending at or below this node, and how many end exactly here
+		int names;
+		int ending;
+
+		// The name as last added, in its original case
+		String username;
+
+		Node child(char key) {
+			int index = Arrays.binarySearch(keys, 0, childCount, key);
+			return index >= 0 ? children[index] : null;
+		}
+
+		Node childOrCreate(char key) {
+			int index = Arrays.binarySearch(keys, 0, childCount, key);
+
+			if (index >= 0) return children[index];
+
+			index = -index - 1;
+
+			if (childCount == keys.length) {
+				int capacity = Math.max(2, keys.length * 2);
+				keys = Arrays.copyOf(keys, capacity);
+				children = Arrays.copyOf(children, capacity);
+			}
+
+			System.arraycopy(keys, index, keys, index + 1, childCount - index);
+			System.arraycopy(children, index, children, index + 1, childCount - index);
+			keys[index] = key;
+			children[index] = new Node();
+			childCount++;
+			return children[index];
+		}
+
+		void removeChild(char key) {
+			int index = Arrays.binarySearch(keys, 0, childCount, key);
+
+			if (index < 0) return;
+
+			System.arraycopy(keys, index + 1, keys, index, childCount - index - 1);
+			System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+			childCount--;
+			children[childCount] = null;
+		}
+	}
+}
@@ -0,0 +1,179 @@
+// WaitEstimator.java
+package org.projectpersistence.queue;
+
+import java.util.Arrays;
+
+// Streaming estimate of how long a queued player still has to wait.
+// Keeps exponentially weighted moving averages of the overall admission rate and of each point tier's
+// admission rate. Within a tier the queue is first come first served, so a player's place among their own tier
+// divided by the tier's rate is how fast that place moves; the estimate is the sooner of that and their overall
+// position at the overall rate, which covers tiers that overtake others and tiers that haven't had an
+// admission lately. The rates are updated, and every entry's place in its tier recorded, once per position
+// display pass as part of the walk it already makes, so reading an estimate is O(1).
+// Nothing is sampled while the queue is paused or the main server is offline, so the estimates carry over once
+// it resumes. Owned by the queue engine thread.
+class WaitEstimator {
+
+	// How quickly the averages follow a change in throughput
+	private static final double TAU_SECONDS = 60;
+
+	// Front-of-queue entries are tracked apart from the configured rates
+	private static final int FRONT = 0;
+
+	private final QueueEntryTable entries;
+
+	private long lastSample = -1;
+
+	private int admissionsSinceSample;
+
+	private final Average admissionRate = new Average();
+
+	// Per tier, keyed by seconds per point; there are only a handful, so they are searched linearly
+	private int[] tierKeys = new int[8];
+
+	private Average[] tierRate = new Average[8];
+
+	private int[] tierAdmissions = new int[8];
+
+	private int[] tierSeen = new int[8];
+
+	private int tierCount;
+
+	WaitEstimator(QueueEntryTable entries) {
+		this.entries = entries;
+	}
+
+	void admitted(boolean front, int secondsPerPoint) {
+		admissionsSinceSample++;
+		tierAdmissions[tier(front, secondsPerPoint)]++;
+	}
+
+	// Called for every slot in queue order; records the entry's place among its own tier
+	void observe(int slot) {
+		entries.tierRank[slot] = ++tierSeen[tier(entries.isFront(slot), entries.secondsPerPoint(slot))];
+	}
+
+	// Called by each display pass after it walked the queue. A pass that doesn't sample still resets the
+	// baseline, so time spent paused or offline isn't counted as time in which nothing moved
+	void endPass(long now, boolean sample, boolean queued) {
+		double seconds = (now - lastSample) / 1000.0;
+
+		if (!sample || !queued || lastSample < 0 || seconds <= 0) {
+			// An empty queue says nothing about how fast a queue would move either
+			discardPass(now);
+			return;
+		}
+
+		double alpha = 1 - Math.exp(-seconds / TAU_SECONDS);
+		admissionRate.add(admissionsSinceSample / seconds, alpha);
+
+		for (int i = 0; i < tierCount; i++) {
+			// A tier nobody is waiting in says nothing about how fast it moves
+			if (tierSeen[i] > 0 || tierAdmissions[i] > 0) {
+				tierRate[i].add(tierAdmissions[i] / seconds, alpha);
+			}
+		}
+
+		discardPass(now);
+	}
+
+	// Estimated seconds until the slot's entry, at the given rank, is admitted, or -1 if there is nothing to go on yet
+	long etaSeconds(int slot, int rank) {
+		double overall = admissionRate.value();
+		double tier = rate(entries.isFront(slot), entries.secondsPerPoint(slot));
+		int tierRank = entries.tierRank[slot];
+		long eta = Long.MAX_VALUE;
+
+		// Everyone ahead being admitted first, at the overall rate
+		if (overall > 0) {
+			eta = (long) Math.ceil(rank / overall);
+		}
+
+		// Only the same tier ahead being admitted first, at that tier's rate; shorter when the tier overtakes others
+		if (tierRank > 0 && tier > 0) {
+			eta = Math.min(eta, (long) Math.ceil(tierRank / tier));
+		}
+
+		return eta == Long.MAX_VALUE ? -1 : eta;
+	}
+
+	// Rounds an estimate to what players are shown, so the action bar only changes every minute or so:
+	// -1 when unknown, 0 for under a minute, otherwise whole minutes, and 5 minute steps past an hour
+	static int displayMinutes(long etaSeconds) {
+		if (etaSeconds < 0) return -1;
+		if (etaSeconds < 60) return 0;
+
+		long minutes = (etaSeconds + 59) / 60;
+
+		if (minutes > 60) {
+			minutes = (minutes + 4) / 5 * 5;
+		}
+
+		return (int) Math.min(minutes, Integer.MAX_VALUE);
+	}
+
+	static String format(int displayMinutes) {
+		if (displayMinutes < 0) return "unknown";
+		if (displayMinutes == 0) return "<1m";
+		if (displayMinutes < 60) return "~" + displayMinutes + "m";
+
+		int minutes = displayMinutes % 60;
+		return "~" + (displayMinutes / 60) + "h" + (minutes == 0 ? "" : " " + minutes + "m");
+	}
+
+	private double rate(boolean front, int secondsPerPoint) {
+		int key = front ? FRONT : secondsPerPoint;
+
+		for (int i = 0; i < tierCount; i++) {
+			if (tierKeys[i] == key) return tierRate[i].value();
+		}
+
+		return 0;
+	}
+
+	private int tier(boolean front, int secondsPerPoint) {
+		int key = front ? FRONT : secondsPerPoint;
+
+		for (int i = 0; i < tierCount; i++) {
+			if (tierKeys[i] == key) return i;
+		}
+
+		if (tierCount == tierKeys.length) {
+			int capacity = tierKeys.length * 2;
+			tierKeys = Arrays.copyOf(tierKeys, capacity);
+			tierRate = Arrays.copyOf(tierRate, capacity);
+			tierAdmissions = Arrays.copyOf(tierAdmissions, capacity);
+			tierSeen = Arrays.copyOf(tierSeen, capacity);
+		}
+
+		tierKeys[tierCount] = key;
+		tierRate[tierCount] = new Average();
+		return tierCount++;
+	}
+
+	private void discardPass(long now) {
+		lastSample = now;
+		admissionsSinceSample = 0;
+
+		for (int i = 0; i < tierCount; i++) {
+			tierAdmissions[i] = 0;
+			tierSeen[i] = 0;
+		}
+	}
+
+	// Exponentially weighted moving average, corrected for starting at zero so the first samples aren't
+	// pulled towards it
+	private static final class Average {
+		private double sum;
+		private double weight;
+
+		void add(double sample, double alpha) {
+			sum = sum * (1 - alpha) + sample * alpha;
+			weight = weight * (1 - alpha) + alpha;
+		}
+
+		double value() {
+			return weight == 0 ? 0 : sum / weight;
+		}
+	}
+}
@@ -0,0 +1,261 @@
+// QueueSimulation.java
+package org.projectpersistence.queue;
+
+import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyPreShutdownEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
+import org.slf4j.Logger;
+import org.spongepowered.configurate.CommentedConfigurationNode;
+import org.spongepowered.configurate.yaml.YamlConfigurationLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.stream.Stream;
+
+// Replays a load scenario against the real Queue plugin on simulated time, and reports how the queue coped.
+// Runs are deterministic for a given seed: the plugin's clock, scheduler and engine are all driven from the
+// simulation's single event loop.
+//
+// Every scenario first fills the main server, then starts a login storm. On top of that:
+//   storm        nothing else
+//   restart      the main server goes down for 90 seconds right after the storm
+//   disconnects  half of the waiting players disconnect 30 seconds after the storm, and half of those come
+//                back within two minutes
+//
+// ./gradlew simulate -Psim="--scenario restart --players 50000 --storm-seconds 60 --capacity 5000"
+public final class QueueSimulation {
+
+	private static final long START_MILLIS = 1_700_000_000_000L;
+
+	private static final long WARMUP_MILLIS = 10_000;
+
+	// Share of players holding no point tier; the rest are spread over the tiers, slower tiers more common
+	private static final double DEFAULT_SHARE = 0.7;
+
+	private static final double PRIORITY_SHARE = 0.01;
+
+	// How often waiting players without an outstanding wait estimate are given one
+	private static final long ESTIMATE_INTERVAL_MILLIS = 30_000;
+
+	private QueueSimulation() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		Map<String, String> options = parse(args);
+		String scenario = options.getOrDefault("scenario", "storm");
+		int players = Integer.parseInt(options.getOrDefault("players", "50000"));
+		long stormMillis = Long.parseLong(options.getOrDefault("storm-seconds", "60")) * 1000;
+		int capacity = Integer.parseInt(options.getOrDefault("capacity", "5000"));
+		long sessionMillis = Long.parseLong(options.getOrDefault("session-seconds", "300")) * 1000;
+		long durationMillis = Long.parseLong(options.getOrDefault("duration-seconds", "900")) * 1000;
+		long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+		boolean verbose = options.containsKey("verbose");
+
+		if (!List.of("storm", "restart", "disconnects").contains(scenario)) {
+			throw new IllegalArgumentException("Unknown scenario " + scenario + ", expected storm, restart or disconnects");
+		}
+
+		Path dataDirectory = Files.createTempDirectory("queue-sim");
+
+		try {
+			Files.writeString(dataDirectory.resolve("server-config.yml"),
+				"main-server: main\nqueue-server: queue\nmain-server-max-players: " + capacity + "\n");
+
+			if (options.containsKey("points")) {
+				Files.copy(Path.of(options.get("points")), dataDirectory.resolve("queue-points.yml"), StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			run(dataDirectory, scenario, players, stormMillis, capacity, sessionMillis, durationMillis, seed, verbose);
+		} finally {
+			try (Stream<Path> files = Files.walk(dataDirectory)) {
+				files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+			}
+		}
+	}
+
+	private static void run(Path dataDirectory, String scenario, int players, long stormMillis, int capacity,
+		long sessionMillis, long durationMillis, long seed, boolean verbose) throws IOException {
+		long wallStart = System.nanoTime();
+		Random random = new Random(seed);
+		SimClock clock = new SimClock(START_MILLIS);
+		SimScheduler scheduler = new SimScheduler(clock);
+		SimReport report = new SimReport(START_MILLIS, capacity);
+		SimWorld world = new SimWorld(clock, scheduler, report, random, sessionMillis);
+		world.main.maxPlayers = capacity;
+
+		Queue queue = new Queue(world.proxy, logger(verbose), dataDirectory, clock, false);
+		world.attach(queue);
+		world.plugin(() -> queue.onProxyInitialization(new ProxyInitializeEvent()));
+
+		// Read back the tiers the plugin loaded, which are its defaults unless a file was copied in
+		Map<String, Integer> tiers = loadTiers(dataDirectory.resolve("queue-points.yml"));
+		List<String> labels = new ArrayList<>(tiers.keySet());
+		labels.add("default");
+		labels.add("priority");
+		report.tiers(labels);
+
+		// Fill the main server before the storm; these players' waits aren't measured
+		for (int i = 0; i < capacity; i++) {
+			SimWorld.SimPlayer player = newPlayer(world, random, tiers, "warm" + i);
+			scheduler.at(START_MILLIS + (long)(random.nextDouble() * WARMUP_MILLIS), () -> world.login(player, false));
+		}
+
+		long stormStart = START_MILLIS + WARMUP_MILLIS;
+		long stormEnd = stormStart + stormMillis;
+
+		for (int i = 0; i < players; i++) {
+			SimWorld.SimPlayer player = newPlayer(world, random, tiers, "sim" + i);
+			scheduler.at(stormStart + (long)(random.nextDouble() * stormMillis), () -> world.login(player, true));
+		}
+
+		switch (scenario) {
+			case "restart":
+				scheduler.at(stormEnd, () -> world.stop(world.main));
+				scheduler.at(stormEnd + 90_000, () -> world.start(world.main));
+				break;
+			case "disconnects":
+				scheduler.at(stormEnd + 30_000, () -> {
+					for (SimWorld.SimPlayer player: world.waitingPlayers()) {
+						if (random.nextBoolean()) continue;
+
+						world.disconnect(player);
+
+						if (random.nextBoolean()) {
+							scheduler.after(10_000 + (long)(random.nextDouble() * 110_000), () -> world.login(player, true));
+						}
+					}
+				});
+				break;
+			default:
+				break;
+		}
+
+		scheduleSampler(world, report, START_MILLIS + 1000);
+
+		long end = START_MILLIS + durationMillis;
+
+		while (scheduler.runNext(end)) {
+			// Each step runs one world event or plugin task
+		}
+
+		clock.set(end);
+		int stillWaiting = world.waiting();
+		world.plugin(() -> queue.onProxyPreShutdown(new ProxyPreShutdownEvent()));
+		world.plugin(() -> queue.onProxyShutdown(new ProxyShutdownEvent()));
+
+		System.out.println("=== Scenario " + scenario + ": " + players + " logins over " + stormMillis / 1000 + "s, capacity " +
+			capacity + ", mean session " + sessionMillis / 1000 + "s, " + durationMillis / 1000 + "s simulated, seed " + seed + " ===");
+		report.print(System.out, stillWaiting);
+		System.out.println("Wall time: " + (System.nanoTime() - wallStart) / 1_000_000 + "ms");
+	}
+
+	private static void scheduleSampler(SimWorld world, SimReport report, long at) {
+		world.scheduler.at(at, () -> {
+			report.sample(world.waiting(), world.main.players.size(), world.main.online);
+
+			if ((at - START_MILLIS) % ESTIMATE_INTERVAL_MILLIS == 0) {
+				world.estimateWaits();
+			}
+
+			scheduleSampler(world, report, at + 1000);
+		});
+	}
+
+	private static SimWorld.SimPlayer newPlayer(SimWorld world, Random random, Map<String, Integer> tiers, String name) {
+		UUID id = new UUID(random.nextLong(), random.nextLong());
+		Set<String> permissions = new HashSet<>();
+		String tier = pickTier(random, tiers);
+
+		if (tier != null) {
+			permissions.add(tier);
+		}
+
+		if (random.nextDouble() < PRIORITY_SHARE) {
+			permissions.add("queue.priority");
+			return world.new SimPlayer(id, name, "priority", permissions);
+		}
+
+		return world.new SimPlayer(id, name, tier == null ? "default" : tier, permissions);
+	}
+
+	// Returns a tier permission, or null for a player without one
+	private static String pickTier(Random random, Map<String, Integer> tiers) {
+		double r = random.nextDouble();
+
+		if (tiers.isEmpty() || r < DEFAULT_SHARE) return null;
+
+		double tierSeconds = 0;
+
+		for (int seconds: tiers.values()) {
+			tierSeconds += seconds;
+		}
+
+		double point = (r - DEFAULT_SHARE) / (1 - DEFAULT_SHARE) * tierSeconds;
+		String last = null;
+
+		for (Map.Entry<String, Integer> tier: tiers.entrySet()) {
+			point -= tier.getValue();
+			last = tier.getKey();
+
+			if (point < 0) break;
+		}
+
+		return last;
+	}
+
+	private static Map<String, Integer> loadTiers(Path file) throws IOException {
+		CommentedConfigurationNode root = YamlConfigurationLoader.builder()
+			.path(file)
+			.build()
+			.load();
+
+		Map<String, Integer> tiers = new LinkedHashMap<>();
+
+		for (Map.Entry<Object, ? extends CommentedConfigurationNode> entry: root.node("tiers").childrenMap().entrySet()) {
+			tiers.put(entry.getKey().toString(), Math.max(1, entry.getValue().getInt(60)));
+		}
+
+		return tiers;
+	}
+
+	// Prints the plugin's warnings and errors, and its info lines with --verbose
+	private static Logger logger(boolean verbose) {
+		return SimWorld.fake(Logger.class, (proxy, method, args) -> {
+			String level = method.getName();
+
+			if (args == null || args.length == 0 || !(args[0] instanceof String)) return null;
+			if (!level.equals("warn") && !level.equals("error") && !(verbose && level.equals("info"))) return null;
+
+			System.err.println("[queue] " + level.toUpperCase() + " " + args[0]);
+
+			if (args[args.length - 1] instanceof Throwable) {
+				((Throwable) args[args.length - 1]).printStackTrace();
+			}
+
+			return null;
+		});
+	}
+
+	private static Map<String, String> parse(String[] args) {
+		Map<String, String> options = new HashMap<>();
+
+		for (int i = 0; i < args.length; i++) {
+			if (!args[i].startsWith("--")) {
+				throw new IllegalArgumentException("Unexpected argument " + args[i]);
+			}
+
+			String key = args[i].substring(2);
+
+			if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+				options.put(key, args[++i]);
+			} else {
+				options.put(key, "true");
+			}
+		}
+
+		return options;
+	}
+}
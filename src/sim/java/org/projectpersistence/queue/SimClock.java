@@ -0,0 +1,41 @@
+// SimClock.java
+package org.projectpersistence.queue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+// Simulated time, moved forward only by the simulation's event loop.
+final class SimClock extends Clock {
+
+	private long millis;
+
+	SimClock(long millis) {
+		this.millis = millis;
+	}
+
+	void set(long millis) {
+		this.millis = millis;
+	}
+
+	@Override
+	public long millis() {
+		return millis;
+	}
+
+	@Override
+	public Instant instant() {
+		return Instant.ofEpochMilli(millis);
+	}
+
+	@Override
+	public ZoneId getZone() {
+		return ZoneOffset.UTC;
+	}
+
+	@Override
+	public Clock withZone(ZoneId zone) {
+		return this;
+	}
+}
@@ -0,0 +1,187 @@
+// SimReport.java
+package org.projectpersistence.queue;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Measurements collected over a simulation run:
+// - admission latency, from login (or from being kicked off the main server) until arriving on it, overall
+//   and per point tier
+// - slot utilisation of the main server, sampled every simulated second while players are waiting
+// - CPU time the plugin spent per simulated second, including draining its engine
+// - how far the plugin's wait estimates were off from the wait that followed
+final class SimReport {
+
+	// Growable list of longs, so 50k samples aren't boxed
+	static final class Samples {
+		private long[] values = new long[1024];
+		private int size;
+
+		void add(long value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+
+			values[size++] = value;
+		}
+
+		int size() {
+			return size;
+		}
+
+		long get(int index) {
+			return values[index];
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		long[] sorted() {
+			long[] sorted = Arrays.copyOf(values, size);
+			Arrays.sort(sorted);
+			return sorted;
+		}
+	}
+
+	private final long startMillis;
+
+	private final int capacity;
+
+	private final Samples admissionMillis = new Samples();
+
+	private final Map<String, Samples> tierAdmissionMillis = new LinkedHashMap<>();
+
+	// Actual wait minus estimated wait, in milliseconds, and the same relative to the actual wait in percent
+	private final Samples estimateErrorMillis = new Samples();
+
+	private final Samples estimateErrorPercent = new Samples();
+
+	// CPU nanoseconds charged to each simulated second since the start
+	private long[] cpuPerSecond = new long[1024];
+
+	private int lastSecond = -1;
+
+	private long utilisationSamples;
+
+	private double utilisationSum;
+
+	private long idleSlotSeconds;
+
+	private int maxOccupied;
+
+	long logins;
+
+	long connects;
+
+	long failedConnects;
+
+	long messages;
+
+	long actionBars;
+
+	SimReport(long startMillis, int capacity) {
+		this.startMillis = startMillis;
+		this.capacity = capacity;
+	}
+
+	// Lists tiers in this order in the report, including any nobody was admitted from
+	void tiers(Iterable<String> tiers) {
+		for (String tier: tiers) {
+			tierAdmissionMillis.putIfAbsent(tier, new Samples());
+		}
+	}
+
+	void arrived(SimWorld.SimPlayer player, long now, int occupied) {
+		maxOccupied = Math.max(maxOccupied, occupied);
+
+		if (player.waitingSince < 0) return;
+
+		for (int i = 0; i < player.estimates.size(); i += 2) {
+			long actual = now - player.estimates.get(i);
+			long error = actual - player.estimates.get(i + 1) * 1000;
+			estimateErrorMillis.add(error);
+			estimateErrorPercent.add(Math.abs(error) * 100 / Math.max(actual, 1000));
+		}
+
+		player.estimates.clear();
+
+		long waited = now - player.waitingSince;
+		admissionMillis.add(waited);
+		tierAdmissionMillis.computeIfAbsent(player.tier, t -> new Samples()).add(waited);
+	}
+
+	void cpu(long now, long nanos) {
+		int second = (int)((now - startMillis) / 1000);
+
+		if (second >= cpuPerSecond.length) {
+			cpuPerSecond = Arrays.copyOf(cpuPerSecond, Math.max(second + 1, cpuPerSecond.length * 2));
+		}
+
+		cpuPerSecond[second] += nanos;
+		lastSecond = Math.max(lastSecond, second);
+	}
+
+	// Called once per simulated second
+	void sample(int waiting, int occupied, boolean mainOnline) {
+		maxOccupied = Math.max(maxOccupied, occupied);
+
+		if (waiting == 0 || !mainOnline) return;
+
+		utilisationSamples++;
+		utilisationSum += (double) Math.min(occupied, capacity) / capacity;
+		idleSlotSeconds += Math.max(0, capacity - occupied);
+	}
+
+	void print(PrintStream out, int stillWaiting) {
+		out.println("Logins: " + logins + ", main server connects: " + connects + " (" + failedConnects + " failed)");
+		out.println("Admitted after waiting: " + admissionMillis.size() + ", still waiting at the end: " + stillWaiting);
+		out.println("Admission latency: " + latency(admissionMillis));
+
+		for (Map.Entry<String, Samples> tier: tierAdmissionMillis.entrySet()) {
+			out.println("  " + tier.getKey() + ": " + latency(tier.getValue()));
+		}
+
+		if (estimateErrorMillis.size() > 0) {
+			long[] error = estimateErrorMillis.sorted();
+			long[] percent = estimateErrorPercent.sorted();
+			out.println(String.format("Wait estimate error (actual - estimate): n=%d p10 %.1fs, p50 %.1fs, p90 %.1fs; |error| p50 %d%%, p90 %d%%",
+				error.length, percentile(error, 0.1) / 1000.0, percentile(error, 0.5) / 1000.0, percentile(error, 0.9) / 1000.0,
+				percentile(percent, 0.5), percentile(percent, 0.9)));
+		}
+
+		out.println(String.format("Main server utilisation while players waited: %.2f%%, idle slot-seconds: %d, peak players: %d/%d",
+			utilisationSamples == 0 ? 100.0 : 100 * utilisationSum / utilisationSamples, idleSlotSeconds, maxOccupied, capacity));
+
+		long[] ticks = Arrays.copyOf(cpuPerSecond, lastSecond + 1);
+		long total = 0;
+
+		for (long tick: ticks) {
+			total += tick;
+		}
+
+		Arrays.sort(ticks);
+		out.println(String.format("Plugin CPU per simulated second: mean %.3fms, p50 %.3fms, p99 %.3fms, max %.3fms, total %dms",
+			ticks.length == 0 ? 0.0 : total / 1e6 / ticks.length, percentile(ticks, 0.5) / 1e6,
+			percentile(ticks, 0.99) / 1e6, percentile(ticks, 1) / 1e6, total / 1_000_000));
+		out.println("Messages sent: " + messages + ", action bars sent: " + actionBars);
+	}
+
+	private static String latency(Samples samples) {
+		if (samples.size() == 0) return "no admissions";
+
+		long[] sorted = samples.sorted();
+		return String.format("n=%d p50 %.1fs, p90 %.1fs, p99 %.1fs, max %.1fs", sorted.length,
+			percentile(sorted, 0.5) / 1000.0, percentile(sorted, 0.9) / 1000.0,
+			percentile(sorted, 0.99) / 1000.0, percentile(sorted, 1) / 1000.0);
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		if (sorted.length == 0) return 0;
+
+		int index = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+}
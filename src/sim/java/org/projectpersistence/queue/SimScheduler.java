@@ -0,0 +1,163 @@
+// SimScheduler.java
+package org.projectpersistence.queue;
+
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.api.scheduler.Scheduler;
+import com.velocitypowered.api.scheduler.TaskStatus;
+
+import java.time.Duration;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+// Discrete event loop on simulated time. Both the plugin's scheduled tasks (through the fake Velocity
+// Scheduler) and the simulated world's own events are timed tasks here, run strictly in time order and,
+// for equal times, in the order they were scheduled, which keeps every run with the same seed identical.
+final class SimScheduler {
+
+	static final class Task {
+		long at;
+		long seq;
+		final Runnable action;
+		final long repeatMillis;
+		final boolean plugin;
+		boolean cancelled;
+
+		Task(long at, long seq, Runnable action, long repeatMillis, boolean plugin) {
+			this.at = at;
+			this.seq = seq;
+			this.action = action;
+			this.repeatMillis = repeatMillis;
+			this.plugin = plugin;
+		}
+	}
+
+	// Runs each plugin task, so the world can account for it and drain the queue engine afterwards
+	interface PluginRunner {
+		void run(Runnable action);
+	}
+
+	private final SimClock clock;
+
+	private final PriorityQueue<Task> tasks = new PriorityQueue<>((t1, t2) -> {
+		int timeCompare = Long.compare(t1.at, t2.at);
+		return timeCompare != 0 ? timeCompare : Long.compare(t1.seq, t2.seq);
+	});
+
+	private long seq;
+
+	private PluginRunner pluginRunner = Runnable::run;
+
+	SimScheduler(SimClock clock) {
+		this.clock = clock;
+	}
+
+	void setPluginRunner(PluginRunner pluginRunner) {
+		this.pluginRunner = pluginRunner;
+	}
+
+	// Schedules a world event
+	Task at(long at, Runnable action) {
+		return add(at, action, 0, false);
+	}
+
+	Task after(long delayMillis, Runnable action) {
+		return add(clock.millis() + delayMillis, action, 0, false);
+	}
+
+	private Task add(long at, Runnable action, long repeatMillis, boolean plugin) {
+		Task task = new Task(Math.max(at, clock.millis()), seq++, action, repeatMillis, plugin);
+		tasks.add(task);
+		return task;
+	}
+
+	// Runs the next task due at or before the given time, returning false once there is none
+	boolean runNext(long until) {
+		Task task = tasks.peek();
+
+		if (task == null || task.at > until) return false;
+
+		tasks.poll();
+
+		if (task.cancelled) return true;
+
+		clock.set(task.at);
+
+		if (task.plugin) {
+			pluginRunner.run(task.action);
+		} else {
+			task.action.run();
+		}
+
+		// A repeating task goes back in as the same object, so its handle keeps cancelling it
+		if (task.repeatMillis > 0 && !task.cancelled) {
+			task.at += task.repeatMillis;
+			task.seq = seq++;
+			tasks.add(task);
+		}
+
+		return true;
+	}
+
+	// The Velocity scheduler handed to the plugin
+	Scheduler scheduler() {
+		return SimWorld.fake(Scheduler.class, (proxy, method, args) -> {
+			if (method.getName().equals("buildTask") && args[1] instanceof Runnable) {
+				return new Builder((Runnable) args[1]).fake;
+			}
+
+			throw new UnsupportedOperationException("Scheduler." + method.getName());
+		});
+	}
+
+	private final class Builder {
+		final Runnable action;
+		final Scheduler.TaskBuilder fake;
+		long delayMillis;
+		long repeatMillis;
+
+		Builder(Runnable action) {
+			this.action = action;
+			this.fake = SimWorld.fake(Scheduler.TaskBuilder.class, (proxy, method, args) -> {
+				switch (method.getName()) {
+					case "delay":
+						delayMillis = toMillis(args);
+						return proxy;
+					case "repeat":
+						repeatMillis = toMillis(args);
+						return proxy;
+					case "clearDelay":
+						delayMillis = 0;
+						return proxy;
+					case "clearRepeat":
+						repeatMillis = 0;
+						return proxy;
+					case "schedule":
+						return schedule();
+					default:
+						throw new UnsupportedOperationException("TaskBuilder." + method.getName());
+				}
+			});
+		}
+
+		ScheduledTask schedule() {
+			Task task = add(clock.millis() + delayMillis, action, repeatMillis, true);
+
+			return SimWorld.fake(ScheduledTask.class, (proxy, method, args) -> {
+				switch (method.getName()) {
+					case "cancel":
+						task.cancelled = true;
+						return null;
+					case "status":
+						return task.cancelled ? TaskStatus.CANCELLED : TaskStatus.SCHEDULED;
+					default:
+						return null;
+				}
+			});
+		}
+	}
+
+	private static long toMillis(Object[] args) {
+		if (args.length == 1) return ((Duration) args[0]).toMillis();
+		return ((TimeUnit) args[1]).toMillis((Long) args[0]);
+	}
+}
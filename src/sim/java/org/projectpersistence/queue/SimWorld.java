@@ -0,0 +1,455 @@
+// SimWorld.java
+package org.projectpersistence.queue;
+
+import com.velocitypowered.api.command.CommandManager;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.connection.PostLoginEvent;
+import com.velocitypowered.api.event.player.ServerConnectedEvent;
+import com.velocitypowered.api.event.player.ServerPostConnectEvent;
+import com.velocitypowered.api.proxy.ConnectionRequestBuilder;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import com.velocitypowered.api.proxy.server.ServerPing;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+// In-process stand-in for the proxy, its backend servers and its players.
+// The plugin only ever sees Velocity interfaces backed by these fakes. Connections complete after a simulated
+// latency on the event loop, and the events the real proxy would fire are delivered straight to the plugin's
+// handlers. Every call into the plugin drains the queue engine on the simulation thread before returning, and
+// the CPU time it took is charged to the current simulated second.
+final class SimWorld {
+
+	final class SimServer {
+		final String name;
+		final ServerInfo info;
+		final Set<SimPlayer> players = new LinkedHashSet<>();
+		final RegisteredServer fake;
+		final ServerConnection connection;
+		boolean online = true;
+
+		// Max players the server reports in its status ping
+		int maxPlayers;
+
+		SimServer(String name, int port) {
+			this.name = name;
+			this.info = new ServerInfo(name, InetSocketAddress.createUnresolved("127.0.0.1", port));
+			this.fake = fake(RegisteredServer.class, (proxy, method, args) -> {
+				switch (method.getName()) {
+					case "getServerInfo":
+						return info;
+					case "getPlayersConnected":
+						List<Player> connected = new ArrayList<>(players.size());
+
+						for (SimPlayer player: players) {
+							connected.add(player.fake);
+						}
+
+						return connected;
+					case "ping":
+						return ping(this);
+					default:
+						return null;
+				}
+			});
+			this.connection = fake(ServerConnection.class, (proxy, method, args) -> {
+				switch (method.getName()) {
+					case "getServerInfo":
+						return info;
+					case "getServer":
+						return fake;
+					default:
+						return null;
+				}
+			});
+		}
+	}
+
+	final class SimPlayer {
+		final UUID id;
+		final String name;
+		final String tier;
+		final Set<String> permissions;
+		final Player fake;
+		SimServer current;
+		boolean connected;
+
+		// When the player started waiting for the main server, or -1 if their wait isn't measured
+		long waitingSince = -1;
+
+		// The plugin's wait estimates for this player since they started waiting, as pairs of when the estimate
+		// was taken and the seconds it estimated
+		final SimReport.Samples estimates = new SimReport.Samples();
+
+		// Bumped on every arrival on the main server, so a stale session end is ignored
+		int session;
+
+		SimPlayer(UUID id, String name, String tier, Set<String> permissions) {
+			this.id = id;
+			this.name = name;
+			this.tier = tier;
+			this.permissions = permissions;
+			this.fake = fake(Player.class, (proxy, method, args) -> {
+				switch (method.getName()) {
+					case "getUniqueId":
+						return id;
+					case "getUsername":
+						return name;
+					case "hasPermission":
+						return permissions.contains((String) args[0]);
+					case "getCurrentServer":
+						return current == null ? Optional.empty() : Optional.of(current.connection);
+					case "isActive":
+						return connected;
+					case "createConnectionRequest":
+						return connectionRequest(this, (RegisteredServer) args[0]);
+					case "sendMessage":
+						report.messages++;
+						return null;
+					case "sendActionBar":
+						report.actionBars++;
+						return null;
+					default:
+						return null;
+				}
+			});
+		}
+	}
+
+	final SimClock clock;
+
+	final SimScheduler scheduler;
+
+	final SimReport report;
+
+	final Random random;
+
+	final SimServer main;
+
+	final SimServer lobby;
+
+	final ProxyServer proxy;
+
+	private final Map<String, SimServer> servers = new LinkedHashMap<>();
+
+	private final Map<UUID, SimPlayer> online = new HashMap<>();
+
+	private final Map<String, SimPlayer> onlineByName = new HashMap<>();
+
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	private Queue queue;
+
+	long connectMinMillis = 50;
+
+	long connectMaxMillis = 250;
+
+	double connectFailureRate = 0.01;
+
+	long meanSessionMillis;
+
+	SimWorld(SimClock clock, SimScheduler scheduler, SimReport report, Random random, long meanSessionMillis) {
+		this.clock = clock;
+		this.scheduler = scheduler;
+		this.report = report;
+		this.random = random;
+		this.meanSessionMillis = meanSessionMillis;
+		this.main = new SimServer("main", 25566);
+		this.lobby = new SimServer("queue", 25567);
+		servers.put(main.name, main);
+		servers.put(lobby.name, lobby);
+
+		// The plugin only builds and registers its command, the simulation never runs it
+		CommandManager commandManager = chain(CommandManager.class);
+
+		this.proxy = fake(ProxyServer.class, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "getPlayer":
+					SimPlayer player = args[0] instanceof UUID ? online.get((UUID) args[0]) : onlineByName.get(args[0]);
+					return player == null ? Optional.empty() : Optional.of(player.fake);
+				case "getAllPlayers":
+					List<Player> players = new ArrayList<>(online.size());
+
+					for (SimPlayer p: online.values()) {
+						players.add(p.fake);
+					}
+
+					return players;
+				case "getPlayerCount":
+					return online.size();
+				case "getServer":
+					SimServer server = servers.get((String) args[0]);
+					return server == null ? Optional.empty() : Optional.of(server.fake);
+				case "getScheduler":
+					return scheduler.scheduler();
+				case "getCommandManager":
+					return commandManager;
+				default:
+					return null;
+			}
+		});
+
+		scheduler.setPluginRunner(this::plugin);
+	}
+
+	void attach(Queue queue) {
+		this.queue = queue;
+	}
+
+	int waiting() {
+		return queue.queuedPlayers();
+	}
+
+	// Calls into the plugin, then runs whatever it handed to its engine
+	void plugin(Runnable action) {
+		long start = threads.getCurrentThreadCpuTime();
+		action.run();
+
+		while (queue.drainEngines() > 0) {
+			// Commands can submit further commands
+		}
+
+		report.cpu(clock.millis(), threads.getCurrentThreadCpuTime() - start);
+	}
+
+	// A player coming back keeps measuring from when they first started waiting
+	void login(SimPlayer player, boolean measureWait) {
+		if (player.connected) return;
+
+		player.connected = true;
+
+		if (measureWait && player.waitingSince < 0) {
+			player.waitingSince = clock.millis();
+		}
+
+		online.put(player.id, player);
+		onlineByName.put(player.name, player);
+		report.logins++;
+
+		plugin(() -> queue.onPostLogin(new PostLoginEvent(player.fake)));
+
+		// The proxy sends the player to its initial server unless the plugin already moved them somewhere
+		scheduler.after(latency(), () -> {
+			if (player.connected && player.current == null) {
+				move(player, lobby);
+			}
+		});
+	}
+
+	void disconnect(SimPlayer player) {
+		if (!player.connected) return;
+
+		player.connected = false;
+
+		if (player.current != null) {
+			player.current.players.remove(player);
+			player.current = null;
+		}
+
+		online.remove(player.id);
+		onlineByName.remove(player.name);
+		plugin(() -> queue.onDisconnect(new DisconnectEvent(player.fake, DisconnectEvent.LoginStatus.SUCCESSFUL_LOGIN)));
+	}
+
+	// Takes the main server down: its players are kicked to the queue server and connects to it fail
+	void stop(SimServer server) {
+		server.online = false;
+
+		for (SimPlayer player: new ArrayList<>(server.players)) {
+			player.waitingSince = clock.millis();
+			move(player, lobby);
+		}
+	}
+
+	void start(SimServer server) {
+		server.online = true;
+	}
+
+	// Players on the queue server who are still waiting
+	List<SimPlayer> waitingPlayers() {
+		return new ArrayList<>(lobby.players);
+	}
+
+	// Takes the plugin's wait estimate for every waiting player
+	void estimateWaits() {
+		plugin(() -> {
+			for (SimPlayer player: lobby.players) {
+				if (player.waitingSince < 0) continue;
+
+				long estimate = queue.estimatedWaitSeconds(player.id);
+
+				if (estimate >= 0) {
+					player.estimates.add(clock.millis());
+					player.estimates.add(estimate);
+				}
+			}
+		});
+	}
+
+	private void move(SimPlayer player, SimServer to) {
+		SimServer previous = player.current;
+
+		if (previous != null) {
+			previous.players.remove(player);
+		}
+
+		player.current = to;
+		to.players.add(player);
+
+		if (to == main) {
+			report.arrived(player, clock.millis(), main.players.size());
+			player.waitingSince = -1;
+
+			int session = ++player.session;
+			long length = (long)(-Math.log(1 - random.nextDouble()) * meanSessionMillis);
+
+			scheduler.after(length, () -> {
+				if (player.session == session && player.current == main) {
+					disconnect(player);
+				}
+			});
+		}
+
+		RegisteredServer previousServer = previous == null ? null : previous.fake;
+		plugin(() -> queue.onServerConnected(new ServerConnectedEvent(player.fake, to.fake, previousServer)));
+		plugin(() -> queue.onServerPostConnect(new ServerPostConnectEvent(player.fake, previousServer)));
+	}
+
+	private ConnectionRequestBuilder connectionRequest(SimPlayer player, RegisteredServer target) {
+		SimServer to = servers.get(target.getServerInfo().getName());
+
+		return fake(ConnectionRequestBuilder.class, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "getServer":
+					return target;
+				case "connect":
+					CompletableFuture<ConnectionRequestBuilder.Result> future = new CompletableFuture<>();
+
+					scheduler.after(latency(), () -> {
+						ConnectionRequestBuilder.Status status;
+
+						if (!player.connected) {
+							status = ConnectionRequestBuilder.Status.CONNECTION_CANCELLED;
+						} else if (player.current == to) {
+							status = ConnectionRequestBuilder.Status.ALREADY_CONNECTED;
+						} else if (!to.online || random.nextDouble() < connectFailureRate) {
+							status = ConnectionRequestBuilder.Status.SERVER_DISCONNECTED;
+						} else {
+							move(player, to);
+							status = ConnectionRequestBuilder.Status.SUCCESS;
+						}
+
+						if (to == main) {
+							report.connects++;
+
+							if (status != ConnectionRequestBuilder.Status.SUCCESS) {
+								report.failedConnects++;
+							}
+						}
+
+						ConnectionRequestBuilder.Result result = result(status, target);
+						plugin(() -> future.complete(result));
+					});
+
+					return future;
+				default:
+					throw new UnsupportedOperationException("ConnectionRequestBuilder." + method.getName());
+			}
+		});
+	}
+
+	// Answers after a simulated round trip, or fails then if the server is down
+	private CompletableFuture<ServerPing> ping(SimServer server) {
+		CompletableFuture<ServerPing> future = new CompletableFuture<>();
+
+		scheduler.after(latency(), () -> {
+			if (server.online) {
+				ServerPing ping = new ServerPing(new ServerPing.Version(0, "sim"),
+					new ServerPing.Players(server.players.size(), server.maxPlayers, List.of()), null, null);
+				plugin(() -> future.complete(ping));
+			} else {
+				plugin(() -> future.completeExceptionally(new IOException(server.name + " is offline")));
+			}
+		});
+
+		return future;
+	}
+
+	private long latency() {
+		return connectMinMillis + (long)(random.nextDouble() * (connectMaxMillis - connectMinMillis));
+	}
+
+	private static ConnectionRequestBuilder.Result result(ConnectionRequestBuilder.Status status, RegisteredServer target) {
+		return fake(ConnectionRequestBuilder.Result.class, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "isSuccessful":
+					return status == ConnectionRequestBuilder.Status.SUCCESS;
+				case "getStatus":
+					return status;
+				case "getAttemptedConnection":
+					return target;
+				default:
+					return null;
+			}
+		});
+	}
+
+	// Implements an interface with a handler, answering Object methods by identity and anything the handler
+	// leaves unanswered with an empty value
+	static <T> T fake(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "equals":
+					if (method.getParameterCount() == 1) return proxy == args[0];
+					break;
+				case "hashCode":
+					if (method.getParameterCount() == 0) return System.identityHashCode(proxy);
+					break;
+				case "toString":
+					if (method.getParameterCount() == 0) return "Sim" + type.getSimpleName();
+					break;
+			}
+
+			Object result = handler.invoke(proxy, method, args);
+			return result != null ? result : empty(method);
+		}));
+	}
+
+	// A fake whose methods return itself, or another such fake, so builder chains of any length work
+	private static <T> T chain(Class<T> type) {
+		return fake(type, (proxy, method, args) -> {
+			Class<?> returns = method.getReturnType();
+
+			if (returns.isInstance(proxy)) return proxy;
+			return returns.isInterface() ? chain(returns) : null;
+		});
+	}
+
+	private static Object empty(Method method) {
+		Class<?> type = method.getReturnType();
+
+		if (type == boolean.class) return false;
+		if (type == int.class) return 0;
+		if (type == long.class) return 0L;
+		if (type == double.class) return 0.0;
+		if (type == float.class) return 0.0f;
+		if (type == short.class) return (short) 0;
+		if (type == byte.class) return (byte) 0;
+		if (type == char.class) return (char) 0;
+		if (type == Optional.class) return Optional.empty();
+		if (type == Collection.class || type == List.class) return List.of();
+		if (type == Set.class) return Set.of();
+		return null;
+	}
+}
@@ -0,0 +1,141 @@
+// PriorityListTest.java
+package org.projectpersistence.queue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriorityListTest {
+
+	@TempDir
+	Path dataDirectory;
+
+	@Test
+	void containsEveryListedPlayer() throws IOException {
+		// Online UUIDs are random, offline ones share most of their bits
+		List<UUID> playerIds = players(200000, 3);
+		Path file = dataDirectory.resolve(QueueConfig.PRIORITY_LIST_FILE);
+		PriorityList.write(file, playerIds);
+
+		PriorityList mapped = PriorityList.map(file);
+		PriorityList built = PriorityList.of(playerIds);
+
+		assertEquals(playerIds.size(), mapped.size());
+		assertArrayEquals(built.toArray(), mapped.toArray());
+
+		// The Bloom filter must never turn away a player on the list
+		for (UUID playerId: playerIds) {
+			assertTrue(mapped.mightContain(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits()), playerId.toString());
+			assertTrue(mapped.contains(playerId), playerId.toString());
+			assertTrue(built.contains(playerId), playerId.toString());
+		}
+	}
+
+	@Test
+	void findsHitsAndMissesAtTheEnds() throws IOException {
+		Path file = dataDirectory.resolve(QueueConfig.PRIORITY_LIST_FILE);
+		PriorityList.write(file, players(1000, 7));
+		PriorityList list = PriorityList.map(file);
+		UUID[] records = list.toArray();
+		UUID first = records[0];
+		UUID last = records[records.length - 1];
+
+		assertTrue(list.contains(first));
+		assertTrue(list.contains(records[1]));
+		assertTrue(list.contains(records[records.length - 2]));
+		assertTrue(list.contains(last));
+
+		// Misses that get past the Bloom filter, so the binary search has to turn them away
+		assertFalse(list.contains(pastFilter(list, first.getMostSignificantBits() - 1, 0, -1)));
+		assertFalse(list.contains(pastFilter(list, last.getMostSignificantBits() + 1, 0, 1)));
+		assertFalse(list.contains(pastFilter(list, first.getMostSignificantBits(), first.getLeastSignificantBits() - 1, -1)));
+		assertFalse(list.contains(pastFilter(list, last.getMostSignificantBits(), last.getLeastSignificantBits() + 1, 1)));
+	}
+
+	@Test
+	void ordersBySignedBits() throws IOException {
+		UUID lowest = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+		UUID zero = new UUID(0, 0);
+		UUID highest = new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+		Path file = dataDirectory.resolve(QueueConfig.PRIORITY_LIST_FILE);
+		PriorityList.write(file, List.of(highest, zero, lowest, zero));
+		PriorityList list = PriorityList.map(file);
+
+		assertArrayEquals(new UUID[] {lowest, zero, highest}, list.toArray());
+		assertTrue(list.contains(lowest));
+		assertTrue(list.contains(zero));
+		assertTrue(list.contains(highest));
+		assertFalse(list.contains(new UUID(Long.MIN_VALUE, Long.MIN_VALUE + 1)));
+		assertFalse(list.contains(new UUID(Long.MAX_VALUE, Long.MAX_VALUE - 1)));
+		assertFalse(PriorityList.EMPTY.contains(zero));
+	}
+
+	@Test
+	void rejectsTruncatedFile() throws IOException {
+		Path file = dataDirectory.resolve(QueueConfig.PRIORITY_LIST_FILE);
+		PriorityList.write(file, players(100, 11));
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+		assertThrows(IOException.class, () -> PriorityList.map(file));
+	}
+
+	@Test
+	void convertPriorityMergesIntoTheBinaryList() throws IOException {
+		UUID yamlOnly = UUID.randomUUID();
+		UUID both = UUID.randomUUID();
+		UUID binaryOnly = UUID.randomUUID();
+
+		Files.writeString(dataDirectory.resolve(QueueConfig.PRIORITY_FILE), "priority-players:\n" +
+			"  - " + yamlOnly + "\n" +
+			"  - " + both + "\n" +
+			"  - not-a-uuid\n", StandardCharsets.UTF_8);
+		PriorityList.write(dataDirectory.resolve(QueueConfig.PRIORITY_LIST_FILE), List.of(both, binaryOnly));
+
+		assertEquals(3, QueueConfig.convertPriority(dataDirectory, NOPLogger.NOP_LOGGER));
+
+		PriorityList merged = PriorityList.map(dataDirectory.resolve(QueueConfig.PRIORITY_LIST_FILE));
+		assertEquals(Set.of(yamlOnly, both, binaryOnly), new HashSet<>(Arrays.asList(merged.toArray())));
+
+		// Converting again adds nothing
+		assertEquals(3, QueueConfig.convertPriority(dataDirectory, NOPLogger.NOP_LOGGER));
+	}
+
+	// A UUID that isn't on the list but passes its Bloom filter, trying least significant bits from start on
+	private static UUID pastFilter(PriorityList list, long most, long start, int step) {
+		for (int i = 0; i < 1000000; i++) {
+			long least = start + (long) i * step;
+
+			if (list.mightContain(most, least)) return new UUID(most, least);
+		}
+
+		throw new AssertionError("No UUID near " + most + " passed the Bloom filter");
+	}
+
+	private static List<UUID> players(int count, long seed) {
+		Random random = new Random(seed);
+		List<UUID> playerIds = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			playerIds.add(i % 3 == 0
+				? UUID.nameUUIDFromBytes(("OfflinePlayer:player" + i).getBytes(StandardCharsets.UTF_8))
+				: new UUID(random.nextLong(), random.nextLong()));
+		}
+
+		return playerIds;
+	}
+}
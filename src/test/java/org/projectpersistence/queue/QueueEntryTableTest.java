@@ -0,0 +1,145 @@
+// QueueEntryTableTest.java
+package org.projectpersistence.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueEntryTableTest {
+
+	@Test
+	void findsEveryPlayerAcrossChurn() {
+		QueueEntryTable table = new QueueEntryTable();
+		Map<UUID, Integer> slots = new HashMap<>();
+		List<UUID> queued = new ArrayList<>();
+		Random random = new Random(9);
+
+		// Enough to grow the table a few times, with removals throughout to exercise backward-shift deletion
+		for (int round = 0; round < 50000; round++) {
+			if (random.nextInt(3) > 0 || queued.isEmpty()) {
+				UUID playerId = new UUID(random.nextLong(), random.nextLong());
+				int slot = table.put(record(playerId, round), "player" + round);
+				assertFalse(slots.containsValue(slot), "slot " + slot + " handed out twice");
+				slots.put(playerId, slot);
+				queued.add(playerId);
+			} else {
+				UUID playerId = queued.remove(random.nextInt(queued.size()));
+				table.remove(slots.remove(playerId));
+				assertFalse(table.containsKey(playerId));
+			}
+		}
+
+		assertEquals(queued.size(), table.size());
+
+		// Slots keep their numbers while the table grows
+		for (UUID playerId: queued) {
+			int slot = table.slot(playerId);
+			assertEquals((int) slots.get(playerId), slot);
+			assertEquals(playerId, table.playerId(slot));
+			assertTrue(table.isUsed(slot));
+		}
+
+		int used = 0;
+
+		for (int slot = 0; slot < table.slots(); slot++) {
+			if (table.isUsed(slot)) used++;
+		}
+
+		assertEquals(queued.size(), used);
+	}
+
+	@Test
+	void collidingPlayersStayReachableAfterRemovals() {
+		QueueEntryTable table = new QueueEntryTable();
+		List<UUID> players = new ArrayList<>();
+
+		// The hash folds both halves together, so these all land in the same bucket
+		for (int i = 0; i < 64; i++) {
+			players.add(new UUID(i, i));
+		}
+
+		for (UUID playerId: players) {
+			table.put(record(playerId, 0), null);
+		}
+
+		// Remove from the start, middle and end of the probe chain
+		for (int i: new int[] {0, 31, 63, 1, 62}) {
+			table.remove(table.slot(players.get(i)));
+			assertFalse(table.containsKey(players.get(i)));
+		}
+
+		for (int i = 2; i < 62; i++) {
+			if (i != 31) {
+				assertEquals(players.get(i), table.playerId(table.slot(players.get(i))));
+			}
+		}
+
+		assertEquals(59, table.size());
+	}
+
+	@Test
+	void reusesFreedSlotsAndShrinksOnceEmpty() {
+		QueueEntryTable table = new QueueEntryTable();
+		List<Integer> slots = new ArrayList<>();
+
+		for (int i = 0; i < 10000; i++) {
+			slots.add(table.put(record(new UUID(1, i), i), null));
+		}
+
+		int grown = table.slots();
+		int freed = slots.get(500);
+		table.remove(freed);
+		assertEquals(freed, table.put(record(new UUID(2, 0), 0), null));
+		assertEquals(grown, table.slots());
+
+		table.remove(freed);
+
+		for (int slot: slots) {
+			if (slot != freed) table.remove(slot);
+		}
+
+		assertTrue(table.isEmpty());
+		assertEquals(0, table.slots());
+
+		// A fresh start, so new entries begin at the first slot again
+		assertEquals(0, table.put(record(new UUID(3, 0), 0), null));
+		assertEquals(1, table.size());
+	}
+
+	@Test
+	void keepsEntryFieldsAndDerivesPoints() {
+		QueueEntryTable table = new QueueEntryTable();
+		UUID playerId = UUID.randomUUID();
+		int slot = table.put(new EntryRecord(playerId, 1000, 2000, 30, true), "Notch");
+
+		assertTrue(table.isFront(slot));
+		assertFalse(table.isIndexed(slot));
+		assertEquals("Notch", table.username(slot));
+		assertEquals(3, table.pointsAt(slot, 2000 + 95_000));
+		assertEquals(2000 + 4 * 30_000, table.boundaryAfter(slot, 3));
+
+		// Halving the rate keeps the same points and progress at now: 5 of 30 seconds becomes 2.5 of 15
+		long now = 2000 + 95_000;
+		table.setPointsSince(slot, table.pointsSinceAt(slot, 15, now));
+		table.setSecondsPerPoint(slot, 15);
+		assertEquals(3, table.pointsAt(slot, now));
+		assertEquals(now + 12_500, table.boundaryAfter(slot, 3));
+
+		EntryRecord record = table.record(slot);
+		assertEquals(playerId, record.playerId);
+		assertEquals(1000, record.joinTime);
+		assertEquals(15, record.secondsPerPoint);
+		assertTrue(record.front);
+	}
+
+	private static EntryRecord record(UUID playerId, long joinTime) {
+		return new EntryRecord(playerId, joinTime, joinTime, 60, false);
+	}
+}
@@ -0,0 +1,215 @@
+// QueueIndexTest.java
+package org.projectpersistence.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueIndexTest {
+
+	private static final long NOW = 10_000_000L;
+
+	@Test
+	void ordersFrontThenPointsThenRateThenJoinTime() {
+		QueueEntryTable entries = new QueueEntryTable();
+		QueueIndex index = new QueueIndex(entries);
+		int late = add(entries, index, new UUID(0, 1), NOW - 5000, 1, false);
+		int slow = add(entries, index, new UUID(0, 2), NOW - 60_000, 60, false);
+		int fast = add(entries, index, new UUID(0, 3), NOW - 10_000, 10, false);
+		int early = add(entries, index, new UUID(0, 4), NOW - 6000, 1, false);
+		int admin = add(entries, index, new UUID(0, 5), NOW, 1, true);
+		int tieA = add(entries, index, new UUID(-1, 0), NOW - 1000, 1, false);
+		int tieB = add(entries, index, new UUID(1, 0), NOW - 1000, 1, false);
+
+		// 6 and 5 points, then 1 point each: at 1s (a tie broken by signed UUID order), at 10s and at 60s
+		assertEquals(List.of(admin, early, late, tieA, tieB, fast, slow), inOrder(index));
+		assertEquals(admin, index.peek());
+		assertEquals(7, index.size());
+
+		for (int rank = 1; rank <= 7; rank++) {
+			assertEquals(rank, index.rank(inOrder(index).get(rank - 1)));
+		}
+	}
+
+	@Test
+	void staysBalancedAndRanksMatchAcrossChurn() {
+		QueueEntryTable entries = new QueueEntryTable();
+		QueueIndex index = new QueueIndex(entries);
+		List<Integer> slots = new ArrayList<>();
+		Random random = new Random(3);
+
+		for (int round = 0; round < 20000; round++) {
+			int action = random.nextInt(4);
+
+			if (action < 2 || slots.isEmpty()) {
+				long joinTime = NOW - random.nextInt(3_600_000);
+				slots.add(add(entries, index, new UUID(random.nextLong(), random.nextLong()), joinTime, 10 + random.nextInt(4) * 10, false));
+			} else if (action == 2) {
+				int slot = slots.remove(random.nextInt(slots.size()));
+				assertTrue(index.remove(slot));
+				assertFalse(index.remove(slot));
+				entries.remove(slot);
+			} else {
+				int slot = slots.get(random.nextInt(slots.size()));
+				index.reposition(slot, random.nextInt(400));
+			}
+
+			if (round % 1000 == 0) {
+				checkTree(entries, index);
+			}
+		}
+
+		checkTree(entries, index);
+		assertEquals(slots.size(), index.size());
+
+		List<Integer> ordered = inOrder(index);
+
+		for (int i = 0; i < ordered.size(); i++) {
+			assertEquals(i + 1, index.rank(ordered.get(i)));
+		}
+	}
+
+	@Test
+	void repositionAndRetierMoveOnlyIndexedEntries() {
+		QueueEntryTable entries = new QueueEntryTable();
+		QueueIndex index = new QueueIndex(entries);
+		int first = add(entries, index, new UUID(0, 1), NOW - 30_000, 10, false);
+		int second = add(entries, index, new UUID(0, 2), NOW - 20_000, 10, false);
+		long modCount = index.modCount();
+
+		index.reposition(second, entries.indexedPoints[second]);
+		assertEquals(modCount, index.modCount());
+
+		index.reposition(second, 5);
+		assertEquals(List.of(second, first), inOrder(index));
+
+		// An entry out for an admission keeps its new points and comes back in its new place
+		assertTrue(index.remove(second));
+		assertEquals(-1, index.rank(second));
+		index.reposition(second, 1);
+		index.add(second);
+		assertEquals(List.of(first, second), inOrder(index));
+
+		// Same points, so the faster rate goes first
+		index.reposition(second, 3);
+		index.retier(second, 5, NOW - 15_000);
+		assertEquals(5, entries.secondsPerPoint(second));
+		assertEquals(NOW - 15_000, entries.pointsSince(second));
+		assertEquals(List.of(second, first), inOrder(index));
+	}
+
+	@Test
+	void forEachFromStartsAtTheRequestedRank() {
+		QueueEntryTable entries = new QueueEntryTable();
+		QueueIndex index = new QueueIndex(entries);
+
+		for (int i = 0; i < 1000; i++) {
+			add(entries, index, new UUID(0, i), NOW - i * 1000L, 1, false);
+		}
+
+		List<Integer> ordered = inOrder(index);
+
+		for (int from: new int[] {0, 1, 2, 500, 999, 1000, 1001}) {
+			List<Integer> page = new ArrayList<>();
+			int[] expectedRank = {Math.max(1, from)};
+
+			index.forEachFrom(from, (slot, rank) -> {
+				assertEquals(expectedRank[0]++, rank);
+				page.add(slot);
+				return page.size() < 10;
+			});
+
+			int start = Math.max(1, from) - 1;
+			assertEquals(ordered.subList(Math.min(start, 1000), Math.min(start + 10, 1000)), page, "from " + from);
+		}
+	}
+
+	@Test
+	void pollEmptiesTheIndexInOrder() {
+		QueueEntryTable entries = new QueueEntryTable();
+		QueueIndex index = new QueueIndex(entries);
+		Random random = new Random(5);
+
+		for (int i = 0; i < 500; i++) {
+			add(entries, index, new UUID(random.nextLong(), random.nextLong()), NOW - random.nextInt(600_000), 30, random.nextInt(50) == 0);
+		}
+
+		List<Integer> ordered = inOrder(index);
+
+		for (int slot: ordered) {
+			assertEquals(slot, index.poll());
+			assertFalse(entries.isIndexed(slot));
+		}
+
+		assertEquals(QueueEntryTable.NONE, index.poll());
+		assertEquals(QueueEntryTable.NONE, index.peek());
+		assertEquals(0, index.size());
+	}
+
+	private static int add(QueueEntryTable entries, QueueIndex index, UUID playerId, long joinTime, int secondsPerPoint, boolean front) {
+		int slot = entries.put(new EntryRecord(playerId, joinTime, joinTime, secondsPerPoint, front), null);
+		entries.indexedPoints[slot] = entries.pointsAt(slot, NOW);
+		index.add(slot);
+		return slot;
+	}
+
+	private static List<Integer> inOrder(QueueIndex index) {
+		List<Integer> slots = new ArrayList<>();
+		index.forEachInOrder((slot, rank) -> {
+			assertEquals(slots.size() + 1, rank);
+			slots.add(slot);
+		});
+		return slots;
+	}
+
+	// Walks the whole tree checking order, AVL balance, and the stored heights and subtree sizes
+	private static void checkTree(QueueEntryTable entries, QueueIndex index) {
+		List<Integer> ordered = inOrder(index);
+
+		for (int i = 1; i < ordered.size(); i++) {
+			assertTrue(index.compare(ordered.get(i - 1), ordered.get(i)) < 0, "out of order at " + i);
+		}
+
+		int root = ordered.isEmpty() ? QueueEntryTable.NONE : findRoot(entries, ordered);
+		assertEquals(ordered.size(), checkNode(entries, root)[1]);
+	}
+
+	// The one node that isn't a child of another
+	private static int findRoot(QueueEntryTable entries, List<Integer> slots) {
+		boolean[] child = new boolean[entries.slots()];
+
+		for (int slot: slots) {
+			if (entries.indexLeft[slot] != QueueEntryTable.NONE) child[entries.indexLeft[slot]] = true;
+			if (entries.indexRight[slot] != QueueEntryTable.NONE) child[entries.indexRight[slot]] = true;
+		}
+
+		int root = QueueEntryTable.NONE;
+
+		for (int slot: slots) {
+			if (!child[slot]) {
+				assertEquals(QueueEntryTable.NONE, root);
+				root = slot;
+			}
+		}
+
+		return root;
+	}
+
+	// Returns the height and size of the subtree
+	private static int[] checkNode(QueueEntryTable entries, int node) {
+		if (node == QueueEntryTable.NONE) return new int[] {0, 0};
+
+		int[] left = checkNode(entries, entries.indexLeft[node]);
+		int[] right = checkNode(entries, entries.indexRight[node]);
+
+		assertTrue(Math.abs(left[0] - right[0]) <= 1, "unbalanced at slot " + node);
+		assertEquals(Math.max(left[0], right[0]) + 1, (int) entries.indexHeight[node]);
+		assertEquals(left[1] + right[1] + 1, entries.indexSize[node]);
+		return new int[] {Math.max(left[0], right[0]) + 1, left[1] + right[1] + 1};
+	}
+}
@@ -0,0 +1,207 @@
+// QueueJournalTest.java
+package org.projectpersistence.queue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueJournalTest {
+
+	// Journal header, and the record layout: type, UUID, then a type specific payload
+	private static final int HEADER_BYTES = 8;
+	private static final int JOIN_RECORD_BYTES = 1 + 16 + 8 + 8 + 4 + 1;
+
+	// uuid + join time + points since + seconds per point + front flag
+	private static final int SNAPSHOT_RECORD_BYTES = 16 + 8 + 8 + 4 + 1;
+
+	private static final UUID ALICE = new UUID(1, 1);
+	private static final UUID BOB = new UUID(2, 2);
+	private static final UUID CAROL = new UUID(3, 3);
+
+	@TempDir
+	Path dataDirectory;
+
+	@Test
+	void startsEmptyWithoutState() throws IOException {
+		QueueJournal journal = open();
+
+		assertTrue(journal.restore().isEmpty());
+		assertEquals(HEADER_BYTES, Files.size(journalFile()));
+	}
+
+	@Test
+	void closeCompactsIntoASnapshotThatRestores() throws IOException {
+		QueueJournal journal = open();
+		journal.restore();
+		journal.start();
+
+		journal.join(new EntryRecord(ALICE, 1000, 1000, 60, false));
+		journal.join(new EntryRecord(BOB, 2000, 2000, 30, true));
+		journal.join(new EntryRecord(CAROL, 3000, 3000, 45, false));
+		journal.tier(ALICE, 1500, 20);
+		journal.admit(BOB);
+		journal.leave(UUID.randomUUID());
+		journal.close();
+
+		// Only live entries are written out, and the journal is started over
+		assertEquals(12 + 2L * SNAPSHOT_RECORD_BYTES, Files.size(snapshotFile()));
+		assertEquals(HEADER_BYTES, Files.size(journalFile()));
+
+		Map<UUID, EntryRecord> restored = byPlayer(open().restore());
+		assertEquals(2, restored.size());
+		assertRecord(restored.get(ALICE), 1000, 1500, 20, false);
+		assertRecord(restored.get(CAROL), 3000, 3000, 45, false);
+	}
+
+	@Test
+	void replaysTheJournalOverTheSnapshot() throws IOException {
+		QueueJournal journal = open();
+		journal.restore();
+		journal.start();
+		journal.join(new EntryRecord(ALICE, 1000, 1000, 60, false));
+		journal.join(new EntryRecord(BOB, 2000, 2000, 30, false));
+		journal.close();
+
+		// What a crash would leave behind: records written after the last compaction
+		ByteBuffer records = ByteBuffer.allocate(256);
+		tier(records, ALICE, 4000, 10);
+		event(records, 2, BOB);
+		join(records, CAROL, 5000, 5000, 1, true);
+		append(records);
+
+		Map<UUID, EntryRecord> restored = byPlayer(open().restore());
+		assertEquals(2, restored.size());
+		assertRecord(restored.get(ALICE), 1000, 4000, 10, false);
+		assertRecord(restored.get(CAROL), 5000, 5000, 1, true);
+	}
+
+	@Test
+	void dropsATornRecordAtTheTail() throws IOException {
+		QueueJournal journal = open();
+		journal.restore();
+
+		ByteBuffer records = ByteBuffer.allocate(256);
+		join(records, ALICE, 1000, 1000, 60, false);
+		join(records, BOB, 2000, 2000, 30, false);
+		records.position(records.position() - 5);
+		append(records);
+
+		long validLength = HEADER_BYTES + JOIN_RECORD_BYTES;
+		Map<UUID, EntryRecord> restored = byPlayer(open().restore());
+		assertEquals(List.of(ALICE), List.copyOf(restored.keySet()));
+		assertEquals(validLength, Files.size(journalFile()));
+
+		// New records follow the last complete one, so the next restore sees both
+		QueueJournal reopened = open();
+		reopened.restore();
+		reopened.start();
+		reopened.join(new EntryRecord(CAROL, 3000, 3000, 45, false));
+		reopened.close();
+
+		restored = byPlayer(open().restore());
+		assertEquals(2, restored.size());
+		assertRecord(restored.get(ALICE), 1000, 1000, 60, false);
+		assertRecord(restored.get(CAROL), 3000, 3000, 45, false);
+	}
+
+	@Test
+	void stopsAtAnUnknownRecord() throws IOException {
+		open().restore();
+
+		ByteBuffer records = ByteBuffer.allocate(256);
+		join(records, ALICE, 1000, 1000, 60, false);
+		event(records, 9, BOB);
+		join(records, CAROL, 3000, 3000, 45, false);
+		append(records);
+
+		Map<UUID, EntryRecord> restored = byPlayer(open().restore());
+		assertEquals(List.of(ALICE), List.copyOf(restored.keySet()));
+		assertEquals(HEADER_BYTES + JOIN_RECORD_BYTES, Files.size(journalFile()));
+	}
+
+	@Test
+	void ignoresUnreadableFiles() throws IOException {
+		Files.createDirectories(dataDirectory);
+		Files.write(journalFile(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+		Files.write(snapshotFile(), new byte[] {9, 8, 7});
+
+		assertTrue(open().restore().isEmpty());
+
+		// The journal is started over with a valid header
+		byte[] header = Files.readAllBytes(journalFile());
+		assertEquals(HEADER_BYTES, header.length);
+		assertEquals(0x514A4E4C, ByteBuffer.wrap(header).getInt());
+	}
+
+	@Test
+	void recordsNothingWithoutStart() throws IOException {
+		QueueJournal journal = open();
+		journal.restore();
+		journal.join(new EntryRecord(ALICE, 1000, 1000, 60, false));
+		journal.close();
+
+		assertTrue(open().restore().isEmpty());
+		assertFalse(Files.exists(snapshotFile()));
+	}
+
+	private QueueJournal open() {
+		return new QueueJournal(dataDirectory, NOPLogger.NOP_LOGGER);
+	}
+
+	private Path journalFile() {
+		return dataDirectory.resolve("journal.bin");
+	}
+
+	private Path snapshotFile() {
+		return dataDirectory.resolve("snapshot.bin");
+	}
+
+	private void append(ByteBuffer records) throws IOException {
+		Files.write(journalFile(), Arrays.copyOf(records.array(), records.position()), StandardOpenOption.APPEND);
+	}
+
+	private static void join(ByteBuffer records, UUID playerId, long joinTime, long pointsSince, int secondsPerPoint, boolean front) {
+		event(records, 1, playerId);
+		records.putLong(joinTime).putLong(pointsSince).putInt(secondsPerPoint).put((byte)(front ? 1 : 0));
+	}
+
+	private static void tier(ByteBuffer records, UUID playerId, long pointsSince, int secondsPerPoint) {
+		event(records, 4, playerId);
+		records.putLong(pointsSince).putInt(secondsPerPoint);
+	}
+
+	private static void event(ByteBuffer records, int type, UUID playerId) {
+		records.put((byte) type).putLong(playerId.getMostSignificantBits()).putLong(playerId.getLeastSignificantBits());
+	}
+
+	private static Map<UUID, EntryRecord> byPlayer(List<EntryRecord> records) {
+		Map<UUID, EntryRecord> byPlayer = new HashMap<>();
+
+		for (EntryRecord record: records) {
+			assertNull(byPlayer.put(record.playerId, record));
+		}
+
+		return byPlayer;
+	}
+
+	private static void assertRecord(EntryRecord record, long joinTime, long pointsSince, int secondsPerPoint, boolean front) {
+		assertNotNull(record);
+		assertEquals(joinTime, record.joinTime);
+		assertEquals(pointsSince, record.pointsSince);
+		assertEquals(secondsPerPoint, record.secondsPerPoint);
+		assertEquals(front, record.front);
+	}
+}
@@ -0,0 +1,157 @@
+// QueueServerPoolTest.java
+package org.projectpersistence.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueServerPoolTest {
+
+	private static final List<String> SERVERS = List.of("limbo-1", "limbo-2", "limbo-3", "limbo-4");
+
+	@Test
+	void leastLoadedSpreadsABurstEvenly() {
+		QueueServerPool pool = new QueueServerPool();
+		pool.configure(SERVERS, false, 2, 3);
+
+		// None of the connects complete, so only the players still being placed count as load
+		Map<String, Integer> counts = new HashMap<>();
+
+		for (UUID playerId: players(20000)) {
+			counts.merge(pool.place(playerId, name -> 0, name -> true), 1, Integer::sum);
+		}
+
+		for (String name: SERVERS) {
+			assertEquals(5000, (int) counts.get(name), name);
+		}
+	}
+
+	@Test
+	void hashPlacementSpreadsPlayers() {
+		QueueServerPool pool = new QueueServerPool();
+		pool.configure(SERVERS, true, 2, 3);
+		Map<String, Integer> counts = new HashMap<>();
+
+		for (UUID playerId: players(20000)) {
+			counts.merge(place(pool, playerId), 1, Integer::sum);
+		}
+
+		for (String name: SERVERS) {
+			int count = counts.getOrDefault(name, 0);
+			assertTrue(count > 4500 && count < 5500, name + " got " + count);
+		}
+	}
+
+	@Test
+	void hashPlacementOnlyMovesPlayersOfADownServer() {
+		QueueServerPool pool = new QueueServerPool();
+		pool.configure(SERVERS, true, 2, 3);
+		List<UUID> players = players(20000);
+		Map<UUID, String> before = new HashMap<>();
+
+		for (UUID playerId: players) {
+			before.put(playerId, place(pool, playerId));
+		}
+
+		assertFalse(pool.failed("limbo-2"));
+		assertFalse(pool.failed("limbo-2"));
+		assertTrue(pool.failed("limbo-2"));
+		assertFalse(pool.isUp("limbo-2"));
+
+		int moved = 0;
+
+		for (UUID playerId: players) {
+			String placed = place(pool, playerId);
+			assertNotEquals("limbo-2", placed);
+
+			if (before.get(playerId).equals("limbo-2")) {
+				moved++;
+			} else {
+				assertEquals(before.get(playerId), placed, playerId.toString());
+			}
+		}
+
+		assertTrue(moved > 0);
+
+		// Back up after two good pings, and everyone goes back where they were
+		assertFalse(pool.succeeded("limbo-2"));
+		assertTrue(pool.succeeded("limbo-2"));
+
+		for (UUID playerId: players) {
+			assertEquals(before.get(playerId), place(pool, playerId), playerId.toString());
+		}
+	}
+
+	@Test
+	void hashPlacementIgnoresServerOrder() {
+		QueueServerPool pool = new QueueServerPool();
+		pool.configure(SERVERS, true, 2, 3);
+		QueueServerPool reordered = new QueueServerPool();
+		reordered.configure(List.of("limbo-3", "limbo-1", "limbo-4", "limbo-2"), true, 2, 3);
+
+		// So every proxy sends a player to the same server
+		for (UUID playerId: players(5000)) {
+			assertEquals(place(pool, playerId), place(reordered, playerId), playerId.toString());
+		}
+	}
+
+	@Test
+	void removingAServerOnlyMovesItsPlayers() {
+		QueueServerPool pool = new QueueServerPool();
+		pool.configure(SERVERS, true, 2, 3);
+		List<UUID> players = players(20000);
+		Map<UUID, String> before = new HashMap<>();
+
+		for (UUID playerId: players) {
+			before.put(playerId, place(pool, playerId));
+		}
+
+		pool.configure(List.of("limbo-1", "limbo-2", "limbo-4"), true, 2, 3);
+		assertFalse(pool.contains("limbo-3"));
+
+		for (UUID playerId: players) {
+			if (!before.get(playerId).equals("limbo-3")) {
+				assertEquals(before.get(playerId), place(pool, playerId), playerId.toString());
+			}
+		}
+	}
+
+	@Test
+	void unavailableServersAreSkipped() {
+		QueueServerPool pool = new QueueServerPool();
+		pool.configure(SERVERS, true, 2, 3);
+
+		for (UUID playerId: players(1000)) {
+			String placed = pool.place(playerId, name -> 0, name -> name.equals("limbo-4"));
+			pool.settled(playerId);
+			assertEquals("limbo-4", placed);
+		}
+
+		assertNull(pool.place(UUID.randomUUID(), name -> 0, name -> false));
+	}
+
+	// Places the player and settles the connect straight away, as a completed connect would
+	private static String place(QueueServerPool pool, UUID playerId) {
+		String placed = pool.place(playerId, name -> 0, name -> true);
+		pool.settled(playerId);
+		return placed;
+	}
+
+	private static List<UUID> players(int count) {
+		Random random = new Random(1);
+		List<UUID> players = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			players.add(new UUID(random.nextLong(), random.nextLong()));
+		}
+
+		return players;
+	}
+}
@@ -0,0 +1,173 @@
+// ReconnectGraceCacheTest.java
+package org.projectpersistence.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReconnectGraceCacheTest {
+
+	private static final long TTL = 60_000;
+
+	@Test
+	void takeReturnsTheParkedProgressOnce() {
+		List<UUID> expired = new ArrayList<>();
+		ReconnectGraceCache cache = new ReconnectGraceCache(TTL, 100, expired::add);
+		UUID playerId = UUID.randomUUID();
+
+		cache.park(playerId, 1000, 4000, 30, 10_000);
+		assertTrue(cache.contains(playerId));
+
+		EntryRecord entry = cache.take(playerId, 20_000);
+		assertEquals(playerId, entry.playerId);
+		assertEquals(1000, entry.joinTime);
+		assertEquals(4000, entry.pointsSince);
+		assertEquals(30, entry.secondsPerPoint);
+		assertFalse(entry.front);
+
+		assertNull(cache.take(playerId, 20_000));
+		assertFalse(cache.contains(playerId));
+		assertEquals(0, cache.size());
+
+		// Taken entries don't expire later
+		cache.expire(10_000 + TTL);
+		assertTrue(expired.isEmpty());
+	}
+
+	@Test
+	void expiresInParkingOrder() {
+		List<UUID> expired = new ArrayList<>();
+		ReconnectGraceCache cache = new ReconnectGraceCache(TTL, 100, expired::add);
+		List<UUID> players = players(10, 1);
+
+		for (int i = 0; i < players.size(); i++) {
+			cache.park(players.get(i), 0, 0, 60, i * 1000L);
+		}
+
+		cache.take(players.get(2), 5000);
+		cache.expire(TTL + 4000);
+
+		assertEquals(List.of(players.get(0), players.get(1), players.get(3), players.get(4)), expired);
+		assertEquals(5, cache.size());
+		assertNull(cache.take(players.get(4), TTL + 4000));
+		assertNotNull(cache.take(players.get(5), TTL + 4000));
+	}
+
+	@Test
+	void parkingAgainReplacesTheEarlierEntry() {
+		List<UUID> expired = new ArrayList<>();
+		ReconnectGraceCache cache = new ReconnectGraceCache(TTL, 100, expired::add);
+		UUID playerId = UUID.randomUUID();
+
+		cache.park(playerId, 1000, 1000, 60, 0);
+		cache.park(playerId, 1000, 2000, 45, 30_000);
+		assertEquals(1, cache.size());
+
+		// Only the second park's window counts
+		cache.expire(TTL);
+		assertTrue(expired.isEmpty());
+		assertEquals(45, cache.take(playerId, TTL).secondsPerPoint);
+	}
+
+	@Test
+	void evictsTheOldestWhenFull() {
+		List<UUID> expired = new ArrayList<>();
+		ReconnectGraceCache cache = new ReconnectGraceCache(TTL, 3, expired::add);
+		List<UUID> players = players(5, 2);
+
+		for (UUID playerId: players) {
+			cache.park(playerId, 0, 0, 60, 0);
+		}
+
+		assertEquals(List.of(players.get(0), players.get(1)), expired);
+		assertEquals(3, cache.size());
+
+		// Lowering the limit evicts down to it straight away
+		cache.configure(TTL, 1, 0);
+		assertEquals(List.of(players.get(0), players.get(1), players.get(2), players.get(3)), expired);
+		assertTrue(cache.contains(players.get(4)));
+
+		// A limit of 0 keeps nothing
+		cache.configure(TTL, 0, 0);
+		cache.park(players.get(0), 0, 0, 60, 0);
+		assertFalse(cache.contains(players.get(0)));
+	}
+
+	@Test
+	void growsAndReclaimsTakenSlotsAcrossChurn() {
+		Set<UUID> expired = new HashSet<>();
+		ReconnectGraceCache cache = new ReconnectGraceCache(TTL, 100_000, expired::add);
+		Set<UUID> parked = new HashSet<>();
+		List<UUID> order = new ArrayList<>();
+		Random random = new Random(4);
+
+		// Well past the initial ring, with takes leaving dead slots all through it
+		for (int i = 0; i < 30_000; i++) {
+			UUID playerId = new UUID(random.nextLong(), random.nextLong());
+			cache.park(playerId, i, i, 60, 0);
+			parked.add(playerId);
+			order.add(playerId);
+
+			if (random.nextInt(3) == 0) {
+				UUID taken = order.get(random.nextInt(order.size()));
+
+				if (parked.remove(taken)) {
+					assertEquals(taken, cache.take(taken, 0).playerId);
+				}
+			}
+		}
+
+		assertEquals(parked.size(), cache.size());
+		assertTrue(expired.isEmpty());
+
+		for (UUID playerId: order) {
+			assertEquals(parked.contains(playerId), cache.contains(playerId));
+		}
+
+		cache.expire(TTL);
+		assertEquals(parked, expired);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void collidingPlayersStayReachableAfterTakes() {
+		ReconnectGraceCache cache = new ReconnectGraceCache(TTL, 100, playerId -> { });
+		List<UUID> players = new ArrayList<>();
+
+		// The hash folds both halves together, so these all land in the same bucket
+		for (int i = 0; i < 32; i++) {
+			players.add(new UUID(i, i));
+			cache.park(players.get(i), i, i, 60, 0);
+		}
+
+		for (int i: new int[] {0, 15, 31, 1}) {
+			assertNotNull(cache.take(players.get(i), 0));
+		}
+
+		for (int i = 2; i < 31; i++) {
+			if (i != 15) {
+				assertEquals(i, cache.take(players.get(i), 0).joinTime);
+			}
+		}
+
+		assertEquals(0, cache.size());
+	}
+
+	private static List<UUID> players(int count, long seed) {
+		Random random = new Random(seed);
+		List<UUID> players = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			players.add(new UUID(random.nextLong(), random.nextLong()));
+		}
+
+		return players;
+	}
+}